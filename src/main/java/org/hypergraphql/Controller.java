@@ -1,25 +1,44 @@
 package org.hypergraphql;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ErrorType;
 import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jetty.server.HttpChannel;
 import org.hypergraphql.config.system.HGQLConfig;
+import org.hypergraphql.datafetching.services.SPARQLEndpointService;
 import org.hypergraphql.services.HGQLQueryService;
+import org.hypergraphql.services.QueryResponseCache;
 import spark.ModelAndView;
 import spark.Request;
 import spark.Response;
 import spark.Service;
 import spark.template.velocity.VelocityTemplateEngine;
 
+import static org.hypergraphql.util.ControllerConstants.ACCEPT_ENCODING_HEADER;
+import static org.hypergraphql.util.ControllerConstants.CACHE_CONTROL_HEADER;
+import static org.hypergraphql.util.ControllerConstants.ETAG_HEADER;
+import static org.hypergraphql.util.ControllerConstants.GZIP;
+import static org.hypergraphql.util.ControllerConstants.IF_NONE_MATCH_HEADER;
 import static org.hypergraphql.util.ControllerConstants.ORIGIN_HEADER;
+import static org.hypergraphql.util.ControllerConstants.TIMEOUT_HEADER;
 import static org.hypergraphql.util.ControllerConstants.WILDCARD;
 import static spark.Spark.before;
 
@@ -43,7 +62,8 @@ public class Controller {
         "application/rdf+xml", "RDF/XML",
         "application/turtle", "TTL",
         "application/ntriples", "N-TRIPLES",
-        "application/n3", "N3"
+        "application/n3", "N3",
+        "application/rdf+thrift", "RDF-THRIFT"
     );
 
     private static final Map<String, String> TEXT_MIME_MAP = Map.of(
@@ -67,7 +87,8 @@ public class Controller {
         "application/rdf+xml", false,
         "application/turtle", false,
         "application/ntriples", false,
-        "application/n3", false
+        "application/n3", false,
+        "application/rdf+thrift", false
     );
 
     private static final Map<String, Boolean> TEXT_GQL_TYPES = Map.of(
@@ -84,11 +105,22 @@ public class Controller {
     }
 
     private static final int BAD_REQUEST_CODE = 400;
+    private static final int NOT_MODIFIED_CODE = 304;
+    private static final String QUERY_PARAM = "query";
+    private static final String VARIABLES_PARAM = "variables";
+    private static final String NO_CACHE = "no-cache";
+    private static final String NO_STORE = "no-store";
+
+    // thread-safe once configured; it must not close the servlet's stream, which Spark still writes to
+    private static final ObjectMapper MAPPER = new ObjectMapper(new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
 
     private Service hgqlService;
+    private HGQLConfig hgqlConfig;
 
     public void start(HGQLConfig config) {
 
+        this.hgqlConfig = config;
+
         System.out.println("HGQL service name: " + config.getName());
         System.out.println("GraphQL server started at: http://localhost:" + config.getGraphqlConfig().port() + config.getGraphqlConfig().graphQLPath());
         System.out.println("GraphiQL UI available at: http://localhost:" + config.getGraphqlConfig().port() + config.getGraphqlConfig().graphiQLPath());
@@ -121,48 +153,30 @@ public class Controller {
             );
         });
 
-        // post method for accessing the GraphQL getService
-        hgqlService.post(config.getGraphqlConfig().graphQLPath(), (req, res) -> {
-
-            final var service = new HGQLQueryService(config);
-
-            final var query = consumeRequest(req);
-            final var acceptType = req.headers("accept");
+        // one query service per configuration, so that its execution plans are shared across requests
+        final var service = new HGQLQueryService(config);
 
-            final var mime = MIME_MAP.getOrDefault(acceptType, null);
-            final var contentType = MIME_MAP.getOrDefault(acceptType, "application/json");
-            final var graphQLCompatible = GRAPHQL_COMPATIBLE_TYPE.getOrDefault(acceptType, true);
-//            final var mime = MIME_MAP.getOrDefault(acceptType, null);
-//            final var contentType = MIME_MAP.containsKey(acceptType) ? acceptType : "application/json";
-//            final var graphQLCompatible = GRAPHQL_COMPATIBLE_TYPE.getOrDefault(acceptType, true);
-
-            res.type(contentType);
-
-            final Map<String, Object> result = service.results(query, mime);
+        // post method for accessing the GraphQL getService
+        hgqlService.post(config.getGraphqlConfig().graphQLPath(), (req, res) -> answer(req, res, consumeRequest(req), service));
 
-            final List<GraphQLError> errors = (List<GraphQLError>) result.get("errors");
-            if (!errors.isEmpty()) {
-                res.status(BAD_REQUEST_CODE);
-            }
+        // Return the internal HGQL schema representation as rdf.
 
-            setResponseHeaders(req, res);
+        hgqlService.get(config.getGraphqlConfig().graphQLPath(), (req, res) -> {
 
-            final var mapper = new ObjectMapper();
-            if (graphQLCompatible) {
-                return mapper.readTree(new ObjectMapper().writeValueAsString(result));
-            } else {
-                if (result.containsKey("data")) {
-                    return result.get("data").toString();
-                } else {
-                    JsonNode errorsJson = mapper.readTree(new ObjectMapper().writeValueAsString(errors));
-                    return errorsJson.toString();
+            // GraphQL over GET, which intermediaries can cache
+            if (req.queryParams(QUERY_PARAM) != null) {
+                final var variables = req.queryParams(VARIABLES_PARAM);
+                if (variables != null) {
+                    final var parsed = readJson(variables);
+                    if (parsed == null) {
+                        return badRequest(req, res, "Invalid '" + VARIABLES_PARAM + "' parameter: not JSON");
+                    }
+                    if (parsed.size() > 0) {
+                        return badRequest(req, res, "Unsupported '" + VARIABLES_PARAM + "' parameter: queries take literal arguments only");
+                    }
                 }
+                return answer(req, res, new GraphQLRequest(req.queryParams(QUERY_PARAM)), service);
             }
-        });
-
-        // Return the internal HGQL schema representation as rdf.
-
-        hgqlService.get(config.getGraphqlConfig().graphQLPath(), (req, res) -> {
 
             final var acceptType = req.headers("accept"); // TODO
 
@@ -179,9 +193,217 @@ public class Controller {
 
             return config.getHgqlSchema().getRdfSchemaOutput(mime);
         });
+
+        final var adminPath = config.getGraphqlConfig().adminPath();
+        if (adminPath != null) {
+
+            // runtime statistics of the fetching machinery
+
+            hgqlService.get(adminPath + "/stats", (req, res) -> {
+
+                final Map<String, Object> stats = new HashMap<>();
+                stats.put("executor", config.getFetchExecutor().getStats());
+                stats.put("planCache", service.getPlanCache().getStats());
+                if (service.getResponseCache() != null) {
+                    stats.put("responseCache", service.getResponseCache().getStats());
+                }
+                final Map<String, Object> serviceStats = new TreeMap<>();
+                config.getHgqlSchema().getServices().forEach((id, dataService) -> {
+                    if (!dataService.getStats().isEmpty()) {
+                        serviceStats.put(id, dataService.getStats());
+                    }
+                });
+                stats.put("services", serviceStats);
+
+                res.type("application/json");
+                setResponseHeaders(req, res);
+
+                return writeJson(body(req, res), stats);
+            });
+
+            // the execution plan of a query, as built and as run after merging sibling executions
+
+            hgqlService.post(adminPath + "/explain", (req, res) -> {
+
+                final var explanation = service.explain(consumeRequest(req).query);
+
+                res.type("application/json");
+                setResponseHeaders(req, res);
+
+                return MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(explanation);
+            });
+
+            // drops every cached response and SPARQL result, e.g. once the data behind the services has changed
+
+            hgqlService.post(adminPath + "/cache/invalidate", (req, res) -> {
+
+                final List<String> invalidated = new ArrayList<>();
+                if (service.getResponseCache() != null) {
+                    service.getResponseCache().invalidateAll();
+                    invalidated.add("responses");
+                }
+                config.getHgqlSchema().getServices().forEach((id, dataService) -> {
+                    if (dataService instanceof SPARQLEndpointService && ((SPARQLEndpointService) dataService).getResultCache() != null) {
+                        ((SPARQLEndpointService) dataService).getResultCache().invalidateAll();
+                        invalidated.add(id);
+                    }
+                });
+
+                res.type("application/json");
+                setResponseHeaders(req, res);
+
+                return MAPPER.writeValueAsString(Map.of("invalidated", invalidated));
+            });
+        }
     }
 
-    private String consumeRequest(final Request request) throws IOException {
+    /**
+     * Answers a query, from the response cache if it has the response. Responses which may be cached carry a strong
+     * ETag (as soon as their bytes are known before they are written) and are not sent again to a client which
+     * already has them; others are marked as not to be stored.
+     */
+    private Object answer(final Request req,
+                          final Response res,
+                          final GraphQLRequest request,
+                          final HGQLQueryService service) throws IOException {
+
+        final var acceptType = req.headers("accept");
+
+        final var mime = MIME_MAP.getOrDefault(acceptType, null);
+        final var graphQLCompatible = GRAPHQL_COMPATIBLE_TYPE.getOrDefault(acceptType, true);
+        // peers negotiating a format tell from the content type whether they got it (older versions answer with JSON)
+        final var contentType = graphQLCompatible ? "application/json" : acceptType;
+
+        res.type(contentType);
+        setResponseHeaders(req, res);
+
+        final var body = body(req, res);
+        final var responseCache = service.getResponseCache();
+        final var cacheKey = responseCache == null
+                ? null
+                : QueryResponseCache.keyOf(request.query, mime == null ? contentType : contentType + " " + mime);
+        if (cacheKey != null) {
+            res.raw().addHeader("Vary", "Accept");
+            final var cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                return writeCached(req, res, body, cached, responseCache);
+            }
+            // streamed before it is known to be complete, so it can only be revalidated
+            res.raw().setHeader(CACHE_CONTROL_HEADER, NO_CACHE);
+            if (!graphQLCompatible) {
+                body.capture(responseCache.getMaxBytes());
+            }
+        }
+
+        final Map<String, Object> result = graphQLCompatible
+                ? service.results(request.query, mime, requestTimeout(req))
+                // RDF is written as it is fetched, once the query is known to be valid
+                : service.results(request.query, mime, requestTimeout(req), body);
+        final List<GraphQLError> errors = (List<GraphQLError>) result.get("errors");
+        if (body.isAborted()) {
+            return "";
+        }
+        if (body.isOpen()) {
+            body.finish();
+            final var written = body.getCopy();
+            if (cacheKey != null && errors.isEmpty() && written != null) {
+                responseCache.put(cacheKey, written, contentType);
+            }
+            return "";
+        }
+
+        // a deadline being hit is not the client's fault: partial data goes back as a normal response
+        final var timedOut = errors.stream().allMatch(error -> error.getErrorType() == ErrorType.ExecutionAborted);
+        if (!errors.isEmpty() && !timedOut) {
+            res.status(BAD_REQUEST_CODE);
+        }
+
+        if (graphQLCompatible) {
+            if (cacheKey == null) {
+                return writeJson(body, result);
+            }
+            final var bytes = MAPPER.writeValueAsBytes(result);
+            if (!errors.isEmpty()) {
+                res.raw().setHeader(CACHE_CONTROL_HEADER, NO_STORE);
+                return writeBytes(body, bytes);
+            }
+            return writeCached(req, res, body, responseCache.put(cacheKey, bytes, contentType), responseCache);
+        } else {
+            if (cacheKey != null) {
+                res.raw().setHeader(CACHE_CONTROL_HEADER, NO_STORE);
+            }
+            if (result.containsKey("data")) {
+                return result.get("data").toString();
+            } else {
+                return MAPPER.writeValueAsString(errors);
+            }
+        }
+    }
+
+    /**
+     * Writes a cached response, or just its headers if the client already has it.
+     */
+    private Object writeCached(final Request req,
+                               final Response res,
+                               final ResponseBody body,
+                               final QueryResponseCache.CachedResponse cached,
+                               final QueryResponseCache responseCache) throws IOException {
+
+        res.header(ETAG_HEADER, cached.getEtag());
+        res.raw().setHeader(CACHE_CONTROL_HEADER, "public, max-age=" + responseCache.maxAge(cached));
+        if (matches(req.headers(IF_NONE_MATCH_HEADER), cached.getEtag())) {
+            res.status(NOT_MODIFIED_CODE);
+            return "";
+        }
+        return writeBytes(body, cached.getBody());
+    }
+
+    /**
+     * @return whether an If-None-Match header lists the given ETag (compared weakly, as the header requires)
+     */
+    static boolean matches(final String ifNoneMatch, final String etag) {
+
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (final String candidate : ifNoneMatch.split(",")) {
+            final var tag = StringUtils.removeStart(candidate.trim(), "W/");
+            if (WILDCARD.equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ResponseBody body(final Request req, final Response res) {
+        return new ResponseBody(req, res, hgqlConfig.getGraphqlConfig().gzip());
+    }
+
+    /**
+     * Writes the given value as the JSON body of the response, as it is serialized when responses are chunked.
+     */
+    private Object writeJson(final ResponseBody body, final Object value) throws IOException {
+
+        if (hgqlConfig.getGraphqlConfig().chunked()) {
+            MAPPER.writeValue(body.open(), value);
+            body.finish();
+            return "";
+        }
+        return writeBytes(body, MAPPER.writeValueAsBytes(value));
+    }
+
+    private Object writeBytes(final ResponseBody body, final byte[] bytes) throws IOException {
+
+        final var out = body.open();
+        if (!body.isCompressed()) {
+            body.response.raw().setContentLength(bytes.length);
+        }
+        out.write(bytes);
+        body.finish();
+        return "";
+    }
+
+    private GraphQLRequest consumeRequest(final Request request) throws IOException {
 
         if (request.contentType().equalsIgnoreCase("application-x/graphql")) { // TODO
             return consumeGraphQLBody(request.body());
@@ -190,21 +412,57 @@ public class Controller {
         }
     }
 
-    private String consumeJSONBody(final String body) throws IOException {
+    private GraphQLRequest consumeJSONBody(final String body) throws IOException {
 
-        final var mapper = new ObjectMapper();
-        final var requestObject = mapper.readTree(body);
+        final var requestObject = MAPPER.readTree(body);
         if (requestObject.get("query") == null) {
             throw new IllegalArgumentException(
                     "Body appears to be JSON but does not contain required 'query' attribute: " + body
             );
         }
-        return requestObject.get("query").asText();
+        return new GraphQLRequest(requestObject.get("query").asText());
+    }
+
+    /**
+     * @return the JSON tree of the given value, or null if it is not JSON
+     */
+    private static JsonNode readJson(final String value) {
+
+        try {
+            return MAPPER.readTree(value);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Answers with a 400 and a single GraphQL error, for a request which cannot even be validated.
+     */
+    private Object badRequest(final Request req, final Response res, final String message) throws IOException {
+
+        res.status(BAD_REQUEST_CODE);
+        res.type("application/json");
+        setResponseHeaders(req, res);
+        final GraphQLError error = GraphqlErrorBuilder.newError().message(message).errorType(ErrorType.InvalidSyntax).build();
+        return writeJson(body(req, res), Map.of("errors", List.of(error)));
     }
 
-    private String consumeGraphQLBody(final String body) {
+    private GraphQLRequest consumeGraphQLBody(final String body) {
 
-        return body;
+        return new GraphQLRequest(body);
+    }
+
+    private Long requestTimeout(final Request request) {
+
+        final var timeout = request.headers(TIMEOUT_HEADER);
+        if (StringUtils.isBlank(timeout)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(timeout.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + TIMEOUT_HEADER + " header: " + timeout, e);
+        }
     }
 
     public void stop() {
@@ -214,6 +472,12 @@ public class Controller {
             hgqlService.stop();
             log.info("Shut down server");
         }
+        if (hgqlConfig != null && hgqlConfig.getFetchExecutor() != null) {
+            hgqlConfig.getFetchExecutor().shutdown();
+        }
+        if (hgqlConfig != null && hgqlConfig.getHgqlSchema() != null) {
+            hgqlConfig.getHgqlSchema().getServices().values().forEach(dataService -> dataService.close());
+        }
     }
 
     private void setResponseHeaders(final Request request, final Response response) {
@@ -224,7 +488,9 @@ public class Controller {
                 "Content-Type",
                 "Accept",
                 "authorization",
-                "x-auth-token"
+                "x-auth-token",
+                TIMEOUT_HEADER,
+                IF_NONE_MATCH_HEADER
         );
 
         final var origin = Objects.requireNonNullElse(request.headers(ORIGIN_HEADER), WILDCARD);
@@ -235,5 +501,151 @@ public class Controller {
         response.header("Access-Control-Allow-Headers", StringUtils.join(headersList, ",")); // TODO
 
         response.header("Access-Control-Allow-Credentials", "true"); // TODO
+        response.header("Access-Control-Expose-Headers", ETAG_HEADER);
+    }
+
+    /**
+     * The query of a request. HyperGraphQL resolves the literal arguments of a query only, so a request which sets
+     * variables over GET is rejected rather than answered as if it had none.
+     */
+    private static final class GraphQLRequest {
+
+        private final String query;
+
+        GraphQLRequest(final String query) {
+            this.query = query;
+        }
+    }
+
+    /**
+     * The body of a response, written straight to the servlet's stream (gzip-compressed if so configured and accepted
+     * by the client). Finishing it commits the response, after which Spark no longer writes to it. What is written
+     * can also be copied (uncompressed, up to a limit), for the response cache.
+     */
+    private static final class ResponseBody implements HGQLQueryService.Body {
+
+        private final Request request;
+        private final Response response;
+        private final boolean gzip;
+        private int copyLimit = -1; // no copy
+        private OutputStream out;
+        private GZIPOutputStream compressed;
+        private CopyingOutputStream copy;
+        private boolean aborted;
+
+        ResponseBody(final Request request, final Response response, final boolean gzip) {
+            this.request = request;
+            this.response = response;
+            this.gzip = gzip;
+        }
+
+        /**
+         * Copies what is written from now on, as long as it stays within the given number of bytes.
+         */
+        void capture(final int limit) {
+            this.copyLimit = limit;
+        }
+
+        @Override
+        public OutputStream open() throws IOException {
+
+            if (out == null) {
+                out = response.raw().getOutputStream();
+                if (gzip && StringUtils.containsIgnoreCase(request.headers(ACCEPT_ENCODING_HEADER), GZIP)) {
+                    response.header("Content-Encoding", GZIP);
+                    response.raw().addHeader("Vary", ACCEPT_ENCODING_HEADER);
+                    compressed = new GZIPOutputStream(out);
+                    out = compressed;
+                }
+                if (copyLimit >= 0) {
+                    copy = new CopyingOutputStream(out, copyLimit);
+                    out = copy;
+                }
+            }
+            return out;
+        }
+
+        boolean isOpen() {
+            return out != null;
+        }
+
+        /**
+         * Drops the connection without ending the response, e.g. without the last chunk of a chunked response.
+         */
+        @Override
+        public void abort() {
+
+            aborted = true;
+            if (response.raw() instanceof org.eclipse.jetty.server.Response) {
+                final HttpChannel channel = ((org.eclipse.jetty.server.Response) response.raw()).getHttpChannel();
+                channel.abort(new IOException("Response aborted: the data written is incomplete"));
+            }
+        }
+
+        boolean isAborted() {
+            return aborted;
+        }
+
+        boolean isCompressed() {
+            return compressed != null;
+        }
+
+        /**
+         * @return what was written, or null if it was not copied or went over the limit
+         */
+        byte[] getCopy() {
+            return copy == null ? null : copy.toByteArray();
+        }
+
+        void finish() throws IOException {
+
+            if (isCompressed()) {
+                compressed.finish();
+            }
+            out.flush();
+            response.raw().flushBuffer();
+        }
+    }
+
+    private static final class CopyingOutputStream extends FilterOutputStream {
+
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream(); // null once over the limit
+
+        CopyingOutputStream(final OutputStream out, final int limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkLimit();
+            }
+        }
+
+        private void checkLimit() {
+
+            if (copy.size() > limit) {
+                copy = null;
+            }
+        }
+
+        byte[] toByteArray() {
+            return copy == null ? null : copy.toByteArray();
+        }
     }
 }
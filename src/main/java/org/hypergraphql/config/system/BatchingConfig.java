@@ -0,0 +1,76 @@
+package org.hypergraphql.config.system;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
+import lombok.Getter;
+import org.hypergraphql.exception.HGQLConfigurationException;
+
+/**
+ * Bounds for the adaptive size of the VALUES chunks a SPARQL endpoint service sends, and for how many of them
+ * are in flight at once (the "batching" section of a service configuration). Any value left out of the configuration falls back to its default.
+ */
+@Getter
+public class BatchingConfig {
+
+    private static final int DEFAULT_MIN_SIZE = 10;
+    private static final int DEFAULT_INITIAL_SIZE = 100;
+    private static final int DEFAULT_MAX_SIZE = 1000;
+    private static final int DEFAULT_MAX_BYTES = 6000; // stays below the common 8 KB limit on GET URLs
+    private static final long DEFAULT_FAST_RESPONSE = 1000;
+    private static final int DEFAULT_MAX_CONCURRENT_CHUNKS = 8;
+
+    private final int minSize;
+    private final int initialSize;
+    private final int maxSize;
+    private final int maxBytes;
+    private final long fastResponse;
+    private final int maxConcurrentChunks;
+
+    @JsonCreator
+    public BatchingConfig(@JsonProperty("minSize") final Integer minSize,
+                          @JsonProperty("initialSize") final Integer initialSize,
+                          @JsonProperty("maxSize") final Integer maxSize,
+                          @JsonProperty("maxBytes") final Integer maxBytes,
+                          @JsonProperty("fastResponse") final Long fastResponse,
+                          @JsonProperty("maxConcurrentChunks") final Integer maxConcurrentChunks
+    ) {
+        this.minSize = Objects.requireNonNullElse(minSize, DEFAULT_MIN_SIZE);
+        this.maxSize = Objects.requireNonNullElse(maxSize, DEFAULT_MAX_SIZE);
+        this.initialSize = Objects.requireNonNullElse(initialSize, Math.min(Math.max(DEFAULT_INITIAL_SIZE, this.minSize), this.maxSize));
+        this.maxBytes = Objects.requireNonNullElse(maxBytes, DEFAULT_MAX_BYTES);
+        this.fastResponse = Objects.requireNonNullElse(fastResponse, DEFAULT_FAST_RESPONSE);
+        this.maxConcurrentChunks = Objects.requireNonNullElse(maxConcurrentChunks, DEFAULT_MAX_CONCURRENT_CHUNKS);
+        if (this.minSize < 1 || this.minSize > this.maxSize || this.initialSize < this.minSize || this.initialSize > this.maxSize) {
+            throw new HGQLConfigurationException("Batching requires 1 <= minSize <= initialSize <= maxSize");
+        }
+        if (this.maxConcurrentChunks < 1) {
+            throw new HGQLConfigurationException("Batching requires at least one concurrent chunk");
+        }
+    }
+
+    public static BatchingConfig defaults() {
+        return new BatchingConfig(null, null, null, null, null, null);
+    }
+
+    /**
+     * Longest encoded length, in bytes, of the URIs in one chunk; a chunk always holds at least one URI.
+     */
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Response time, in milliseconds, under which a full chunk lets the size grow.
+     */
+    public long getFastResponse() {
+        return fastResponse;
+    }
+
+    /**
+     * Most chunks sent to the endpoint at the same time, across all requests.
+     */
+    public int getMaxConcurrentChunks() {
+        return maxConcurrentChunks;
+    }
+}
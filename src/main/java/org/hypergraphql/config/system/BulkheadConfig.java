@@ -0,0 +1,62 @@
+package org.hypergraphql.config.system;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * Limits on the queries outstanding against one service (the "bulkhead" section of a service configuration),
+ * so that a degraded service cannot take up every fetch thread. Any value left out of the configuration
+ * falls back to its default. The bulkhead is off unless maxConcurrent is set.
+ *
+ * A query the bulkhead turns away is not sent: the response has no data from the service for it and carries
+ * an ExecutionAborted error "Service '&lt;id&gt;' is saturated; its data is missing" (and is not cached).
+ */
+@Getter
+public class BulkheadConfig {
+
+    private static final int DEFAULT_MAX_CONCURRENT = 0;
+    private static final int DEFAULT_MAX_QUEUE = 64;
+    private static final long DEFAULT_MAX_WAIT = 0;
+
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long maxWait;
+
+    @JsonCreator
+    public BulkheadConfig(@JsonProperty("maxConcurrent") final Integer maxConcurrent,
+                          @JsonProperty("maxQueue") final Integer maxQueue,
+                          @JsonProperty("maxWait") final Long maxWait
+    ) {
+        this.maxConcurrent = Objects.requireNonNullElse(maxConcurrent, DEFAULT_MAX_CONCURRENT);
+        this.maxQueue = Objects.requireNonNullElse(maxQueue, DEFAULT_MAX_QUEUE);
+        this.maxWait = Objects.requireNonNullElse(maxWait, DEFAULT_MAX_WAIT);
+    }
+
+    public static BulkheadConfig defaults() {
+        return new BulkheadConfig(null, null, null);
+    }
+
+    /**
+     * Most queries running against the service at once (0, the default, for no limit and no bulkhead).
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Most queries waiting for one of the running queries to finish; any more are rejected straight away.
+     */
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    /**
+     * Longest time, in milliseconds, a query waits in the queue before it is rejected (never past the request's
+     * deadline). The default of 0 rejects a query as soon as maxConcurrent queries are running.
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+}
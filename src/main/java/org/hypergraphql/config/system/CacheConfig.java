@@ -0,0 +1,51 @@
+package org.hypergraphql.config.system;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * Caching of the results of the queries sent to one service (the "cache" section of a service configuration), or
+ * of whole responses (the "responseCache" of the "execution" section). Caching is off unless a time to live is
+ * configured; any other value left out falls back to its default.
+ */
+@Getter
+public class CacheConfig {
+
+    private static final long NO_CACHING = 0;
+    private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private final long ttl;
+    private final long maxBytes;
+
+    @JsonCreator
+    public CacheConfig(@JsonProperty("ttl") final Long ttl,
+                       @JsonProperty("maxBytes") final Long maxBytes
+    ) {
+        this.ttl = Objects.requireNonNullElse(ttl, NO_CACHING);
+        this.maxBytes = Objects.requireNonNullElse(maxBytes, DEFAULT_MAX_BYTES);
+    }
+
+    public static CacheConfig defaults() {
+        return new CacheConfig(null, null);
+    }
+
+    /**
+     * Time, in milliseconds, a result is served from the cache after it was fetched (0 for no caching).
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Most memory, in (estimated) bytes, the cached results take up.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return ttl > 0 && maxBytes > 0;
+    }
+}
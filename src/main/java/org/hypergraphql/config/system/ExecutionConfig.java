@@ -0,0 +1,121 @@
+package org.hypergraphql.config.system;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Locale;
+import java.util.Objects;
+import lombok.Getter;
+import org.hypergraphql.exception.HGQLConfigurationException;
+
+/**
+ * Sizing of the shared fetch executor (the "execution" section of the configuration).
+ * Any value left out of the configuration falls back to its default.
+ */
+@Getter
+public class ExecutionConfig {
+
+    private static final int DEFAULT_POOL_SIZE = 50;
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final long DEFAULT_KEEP_ALIVE = 60;
+    private static final long NO_TIMEOUT = 0;
+    private static final int DEFAULT_PLAN_CACHE_SIZE = 256;
+    private static final long DEFAULT_BATCH_WINDOW = 0;
+
+    private final Mode mode;
+    private final int poolSize;
+    private final int queueSize;
+    private final long keepAlive;
+    private final long timeout;
+    private final int planCacheSize;
+    private final boolean mergeSiblings;
+    private final long batchWindow;
+    private final boolean fastJson;
+    private final CacheConfig responseCache;
+
+    @JsonCreator
+    public ExecutionConfig(@JsonProperty("mode") final String mode,
+                           @JsonProperty("poolSize") final Integer poolSize,
+                           @JsonProperty("queueSize") final Integer queueSize,
+                           @JsonProperty("keepAlive") final Long keepAlive,
+                           @JsonProperty("timeout") final Long timeout,
+                           @JsonProperty("planCacheSize") final Integer planCacheSize,
+                           @JsonProperty("mergeSiblings") final Boolean mergeSiblings,
+                           @JsonProperty("batchWindow") final Long batchWindow,
+                           @JsonProperty("fastJson") final Boolean fastJson,
+                           @JsonProperty("responseCache") final CacheConfig responseCache
+    ) {
+        this.mode = Mode.forName(mode);
+        this.poolSize = Objects.requireNonNullElse(poolSize, DEFAULT_POOL_SIZE);
+        this.queueSize = Objects.requireNonNullElse(queueSize, DEFAULT_QUEUE_SIZE);
+        this.keepAlive = Objects.requireNonNullElse(keepAlive, DEFAULT_KEEP_ALIVE);
+        this.timeout = Objects.requireNonNullElse(timeout, NO_TIMEOUT);
+        this.planCacheSize = Objects.requireNonNullElse(planCacheSize, DEFAULT_PLAN_CACHE_SIZE);
+        this.mergeSiblings = Objects.requireNonNullElse(mergeSiblings, true);
+        this.batchWindow = Objects.requireNonNullElse(batchWindow, DEFAULT_BATCH_WINDOW);
+        this.fastJson = Objects.requireNonNullElse(fastJson, false);
+        this.responseCache = Objects.requireNonNullElse(responseCache, CacheConfig.defaults());
+    }
+
+    public static ExecutionConfig defaults() {
+        return new ExecutionConfig(null, null, null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Default deadline, in milliseconds, for fetching the data of one request (0 for none).
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Whether sibling executions against the same service are merged into one query per level.
+     */
+    public boolean isMergeSiblings() {
+        return mergeSiblings;
+    }
+
+    /**
+     * Longest time, in milliseconds, a child fetch waits to be batched with fetches of the same shape from
+     * other branches of the request (0, the default, turns batching off).
+     */
+    public long getBatchWindow() {
+        return batchWindow;
+    }
+
+    /**
+     * Whether JSON responses are written straight from the fetched data when the query allows it, rather than
+     * by graphql-java's execution (see {@link org.hypergraphql.query.plan.ResponsePlan}).
+     */
+    public boolean isFastJson() {
+        return fastJson;
+    }
+
+    /**
+     * Caching of whole, serialized responses by query (off unless a time to live is configured), see
+     * {@link org.hypergraphql.services.QueryResponseCache}.
+     */
+    public CacheConfig getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * How fetches are run: on the bounded platform thread pool, or on one virtual thread each
+     * (the latter needs a JDK with virtual threads and falls back to the pool otherwise).
+     */
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL;
+
+        static Mode forName(final String name) {
+
+            if (name == null) {
+                return PLATFORM;
+            }
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new HGQLConfigurationException("Unknown execution mode '" + name + "'", e);
+            }
+        }
+    }
+}
@@ -14,15 +14,24 @@ public class GraphqlConfig {
     private final Integer port;
     private final String graphqlPath;
     private final String graphiqlPath;
+    private final String adminPath;
+    private final boolean chunked;
+    private final boolean gzip;
 
     @JsonCreator
     public GraphqlConfig(@JsonProperty("port") final Integer port,
                          @JsonProperty("graphql") final String graphqlPath,
-                         @JsonProperty("graphiql") final String graphiqlPath
+                         @JsonProperty("graphiql") final String graphiqlPath,
+                         @JsonProperty("admin") final String adminPath,
+                         @JsonProperty("chunked") final Boolean chunked,
+                         @JsonProperty("gzip") final Boolean gzip
     ) {
         this.port = Objects.requireNonNullElseGet(port, this::generateRandomPort);
         this.graphqlPath = graphqlPath;
         this.graphiqlPath = graphiqlPath;
+        this.adminPath = adminPath;
+        this.chunked = Objects.requireNonNullElse(chunked, true);
+        this.gzip = Objects.requireNonNullElse(gzip, false);
     }
 
     public Integer port() {
@@ -47,6 +56,28 @@ public class GraphqlConfig {
         return graphiqlPath;
     }
 
+    /**
+     * Base path of the administrative (statistics) routes; these are not served when it is not configured.
+     */
+    public String adminPath() {
+        return adminPath;
+    }
+
+    /**
+     * Whether JSON responses are streamed to the client as they are written (chunked once they outgrow the server's
+     * output buffer); when off, each response is written to memory first and sent with its Content-Length.
+     */
+    public boolean chunked() {
+        return chunked;
+    }
+
+    /**
+     * Whether JSON and streamed RDF responses are gzip-compressed for clients that accept it.
+     */
+    public boolean gzip() {
+        return gzip;
+    }
+
     @JsonIgnore
     private int generateRandomPort() {
         return ThreadLocalRandom.current().nextInt(PORT_RANGE_START, PORT_RANGE_END);
@@ -5,8 +5,10 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import graphql.schema.GraphQLSchema;
 import java.util.List;
+import java.util.Objects;
 import lombok.Getter;
 import lombok.Setter;
+import org.hypergraphql.datafetching.FetchExecutor;
 import org.hypergraphql.datamodel.HGQLSchema;
 
 /**
@@ -20,21 +22,25 @@ public final class HGQLConfig {
     private final String schemaFile;
     private final GraphqlConfig graphqlConfig;
     private final List<ServiceConfig> serviceConfigs;
+    private final ExecutionConfig executionConfig;
 
     private GraphQLSchema schema;
     private HGQLSchema hgqlSchema;
+    private FetchExecutor fetchExecutor;
 
     @JsonCreator
     private HGQLConfig(
             @JsonProperty("name") final String name,
             @JsonProperty("schema") final String schemaFile,
             @JsonProperty("server") final GraphqlConfig graphqlConfig,
-            @JsonProperty("services") final List<ServiceConfig> services
+            @JsonProperty("services") final List<ServiceConfig> services,
+            @JsonProperty("execution") final ExecutionConfig executionConfig
     ) {
         this.name = name;
         this.schemaFile = schemaFile;
         this.graphqlConfig = graphqlConfig;
         this.serviceConfigs = services;
+        this.executionConfig = Objects.requireNonNullElseGet(executionConfig, ExecutionConfig::defaults);
     }
 
     @JsonIgnore
@@ -56,6 +62,11 @@ public final class HGQLConfig {
     public void setHgqlSchema(final HGQLSchema hgqlSchema) {
         this.hgqlSchema = hgqlSchema;
     }
+
+    @JsonIgnore
+    public void setFetchExecutor(final FetchExecutor fetchExecutor) {
+        this.fetchExecutor = fetchExecutor;
+    }
 }
 
 
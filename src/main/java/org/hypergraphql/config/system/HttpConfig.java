@@ -0,0 +1,92 @@
+package org.hypergraphql.config.system;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * The HTTP client a remote service talks to its endpoint with (the "http" section of a service configuration).
+ * Any value left out of the configuration falls back to its default.
+ */
+@Getter
+public class HttpConfig {
+
+    private static final long DEFAULT_CONNECT_TIMEOUT = 5000;
+    private static final long DEFAULT_READ_TIMEOUT = 30_000;
+    private static final long NO_TIMEOUT = 0;
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    private static final long DEFAULT_KEEP_ALIVE = 30_000;
+
+    private final long connectTimeout;
+    private final long readTimeout;
+    private final long totalTimeout;
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final long keepAlive;
+
+    @JsonCreator
+    public HttpConfig(@JsonProperty("connectTimeout") final Long connectTimeout,
+                      @JsonProperty("readTimeout") final Long readTimeout,
+                      @JsonProperty("totalTimeout") final Long totalTimeout,
+                      @JsonProperty("maxConnections") final Integer maxConnections,
+                      @JsonProperty("maxConnectionsPerRoute") final Integer maxConnectionsPerRoute,
+                      @JsonProperty("keepAlive") final Long keepAlive
+    ) {
+        this.connectTimeout = Objects.requireNonNullElse(connectTimeout, DEFAULT_CONNECT_TIMEOUT);
+        this.readTimeout = Objects.requireNonNullElse(readTimeout, DEFAULT_READ_TIMEOUT);
+        this.totalTimeout = Objects.requireNonNullElse(totalTimeout, NO_TIMEOUT);
+        this.maxConnections = Objects.requireNonNullElse(maxConnections, DEFAULT_MAX_CONNECTIONS);
+        this.maxConnectionsPerRoute = Objects.requireNonNullElse(maxConnectionsPerRoute, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+        this.keepAlive = Objects.requireNonNullElse(keepAlive, DEFAULT_KEEP_ALIVE);
+    }
+
+    public static HttpConfig defaults() {
+        return new HttpConfig(null, null, null, null, null, null);
+    }
+
+    /**
+     * Longest time, in milliseconds, to wait for a connection to the endpoint (0 or less for no limit).
+     */
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Longest time, in milliseconds, to wait for the endpoint to start answering a request (0 or less for no limit).
+     */
+    public long getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Longest time, in milliseconds, a request may take including reading its response (0 or less for no limit other than
+     * the deadline of the GraphQL request it is made for).
+     */
+    public long getTotalTimeout() {
+        return totalTimeout;
+    }
+
+    /**
+     * Most connections pooled for the service (SPARQL endpoints; the HTTP client of other services sizes its own pool).
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Most pooled connections to one host (SPARQL endpoints).
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Longest time, in milliseconds, an idle connection is kept for reuse (SPARQL endpoints; shorter if the endpoint
+     * asks for it).
+     */
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+}
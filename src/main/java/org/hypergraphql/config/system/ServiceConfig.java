@@ -2,6 +2,7 @@ package org.hypergraphql.config.system;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
 import lombok.Getter;
 
 @Getter
@@ -15,7 +16,12 @@ public class ServiceConfig {
     private final String password;
     private final String filepath;
     private final String filetype;
+    private final BatchingConfig batching;
+    private final BulkheadConfig bulkhead;
+    private final HttpConfig http;
+    private final CacheConfig cache;
 
+    @SuppressWarnings("checkstyle:ParameterNumber")
     @JsonCreator
     public ServiceConfig(@JsonProperty("id") final String id,
                          @JsonProperty("type") final String type,
@@ -24,7 +30,11 @@ public class ServiceConfig {
                          @JsonProperty("user") final String user,
                          @JsonProperty("password") final String password,
                          @JsonProperty("filepath") final String filepath,
-                         @JsonProperty("filetype") final String filetype
+                         @JsonProperty("filetype") final String filetype,
+                         @JsonProperty("batching") final BatchingConfig batching,
+                         @JsonProperty("bulkhead") final BulkheadConfig bulkhead,
+                         @JsonProperty("http") final HttpConfig http,
+                         @JsonProperty("cache") final CacheConfig cache
     ) {
         this.id = id;
         this.type = type;
@@ -34,5 +44,9 @@ public class ServiceConfig {
         this.password = password;
         this.filepath = filepath;
         this.filetype = filetype;
+        this.batching = Objects.requireNonNullElse(batching, BatchingConfig.defaults());
+        this.bulkhead = Objects.requireNonNullElse(bulkhead, BulkheadConfig.defaults());
+        this.http = Objects.requireNonNullElse(http, HttpConfig.defaults());
+        this.cache = Objects.requireNonNullElse(cache, CacheConfig.defaults());
     }
 }
@@ -0,0 +1,89 @@
+package org.hypergraphql.datafetching;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.hypergraphql.config.system.BulkheadConfig;
+import org.hypergraphql.exception.HGQLServiceSaturatedException;
+
+/**
+ * Bounds the queries outstanding against one service, across all requests.
+ *
+ * Up to {@link BulkheadConfig#getMaxConcurrent()} queries run at once. Further queries wait, up to
+ * {@link BulkheadConfig#getMaxQueue()} of them and no longer than {@link BulkheadConfig#getMaxWait()}
+ * (or the request's deadline); anything beyond that fails straight away with an
+ * {@link HGQLServiceSaturatedException}, so a slow service cannot hold on to every fetch thread.
+ */
+public final class Bulkhead {
+
+    private final String serviceId;
+    private final BulkheadConfig config;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger(0);
+    private final AtomicLong admitted = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    public Bulkhead(final String serviceId, final BulkheadConfig config) {
+
+        this.serviceId = serviceId;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxConcurrent(), true);
+    }
+
+    /**
+     * Runs a query against the service once the bulkhead lets it in.
+     */
+    public <T> T execute(final ExecutionScope scope, final Supplier<T> query) {
+
+        enter(scope);
+        try {
+            return query.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void enter(final ExecutionScope scope) {
+
+        if (!permits.tryAcquire()) {
+            if (waiting.incrementAndGet() > config.getMaxQueue()) {
+                waiting.decrementAndGet();
+                throw reject("its queue is full");
+            }
+            try {
+                if (!permits.tryAcquire(Math.min(config.getMaxWait(), scope.remainingMillis()), TimeUnit.MILLISECONDS)) {
+                    throw reject("no query finished within " + config.getMaxWait() + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject("the request was cancelled while waiting");
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        admitted.incrementAndGet();
+    }
+
+    private HGQLServiceSaturatedException reject(final String reason) {
+
+        rejected.incrementAndGet();
+        return new HGQLServiceSaturatedException(serviceId,
+                "Service '" + serviceId + "' is saturated (" + config.getMaxConcurrent() + " queries running, " + reason + ")");
+    }
+
+    public Map<String, Object> getStats() {
+
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrent", config.getMaxConcurrent());
+        stats.put("running", config.getMaxConcurrent() - permits.availablePermits());
+        stats.put("maxQueue", config.getMaxQueue());
+        stats.put("waiting", waiting.get());
+        stats.put("admitted", admitted.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+}
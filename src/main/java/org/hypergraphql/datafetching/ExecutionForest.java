@@ -1,44 +1,140 @@
 package org.hypergraphql.datafetching;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDF;
+import org.hypergraphql.datamodel.TripleStore;
+import org.hypergraphql.query.plan.PlanArguments;
+import org.hypergraphql.query.plan.ResponsePlan;
 
 @Slf4j
 @Getter
 public class ExecutionForest  {
 
+    private static final Graph END = Factory.createDefaultGraph(); // marks the end of a stream's fetches
+
     private final Set<ExecutionTreeNode> forest;
+    @Getter(AccessLevel.NONE)
+    private volatile Map<String, String> fullLdContext; // computed once the (cached) plan is in use
+    @Getter(AccessLevel.NONE)
+    private volatile Optional<ResponsePlan> responsePlan; // likewise; empty when the query needs graphql-java
 
     public ExecutionForest() {
         this.forest = new HashSet<>();
     }
 
-    public Model generateModel() {
-
-        final var executor = Executors.newFixedThreadPool(10);
-        final var model = ModelFactory.createDefaultModel();
-        final Set<Future<Model>> futureModels = new HashSet<>();
-        getForest().forEach(node -> {
-            final var fetchingExecution = new FetchingExecution(new HashSet<>(), node);
-            futureModels.add(executor.submit(fetchingExecution));
-        });
-        futureModels.forEach(futureModel -> {
-            try {
-                model.add(futureModel.get());
-            } catch (InterruptedException | ExecutionException e) {
-                log.error("Problem generating model", e);
+    /**
+     * The plan of a query that differs from the one this forest was planned from in its argument values only.
+     *
+     * @param arguments the arguments of that query, by field path (see {@link org.hypergraphql.query.plan.PlanField#getPath()})
+     * @return this forest if its arguments are the same, or a copy with the given arguments
+     */
+    public ExecutionForest bind(final Map<String, PlanArguments> arguments) {
+
+        if (isBoundTo(arguments)) {
+            return this;
+        }
+        return bind(arguments, new IdentityHashMap<>());
+    }
+
+    ExecutionForest bind(final Map<String, PlanArguments> arguments, final Map<ExecutionTreeNode, ExecutionTreeNode> bound) {
+
+        final var result = new ExecutionForest();
+        forest.forEach(node -> result.forest.add(node.bind(arguments, bound)));
+        return result;
+    }
+
+    boolean isBoundTo(final Map<String, PlanArguments> arguments) {
+        return forest.stream().allMatch(node -> node.isBoundTo(arguments));
+    }
+
+    /**
+     * Fetches everything this forest needs, within the deadline of the given scope. When the deadline
+     * passes, the outstanding fetches are cancelled and whatever had been merged so far is returned
+     * ({@link ExecutionScope#isExpired()} then tells the caller the data is partial).
+     */
+    public TripleStore generateStore(final ExecutionScope scope) {
+
+        final var store = TripleStore.builder();
+        scope.awaitDeadline(generate(scope, store::add));
+        // late results are ignored once frozen
+        return store.freeze();
+    }
+
+    /**
+     * As {@link #generateStore(ExecutionScope)}, writing the triples of every fetch to the given sink as they come in
+     * instead of keeping them. Only the calling thread writes to the sink, so a slow sink never holds up a fetch; nothing
+     * is written once the scope has expired or been closed. A triple fetched by more than one execution may be written
+     * more than once, which RDF readers merge.
+     */
+    public void stream(final ExecutionScope scope, final StreamRDF sink) {
+
+        final BlockingQueue<Graph> fetched = new LinkedBlockingQueue<>();
+        final var unregister = scope.onCancel(() -> fetched.add(END));
+        generate(scope, fetched::add).whenComplete((ignored, error) -> fetched.add(END));
+        try {
+            var graph = next(fetched, scope);
+            while (graph != END && scope.isActive()) {
+                graph.find().forEachRemaining(sink::triple);
+                graph = next(fetched, scope);
             }
-        });
-        return model;
+        } finally {
+            unregister.run();
+        }
+    }
+
+    private CompletableFuture<Void> generate(final ExecutionScope scope, final Consumer<Graph> target) {
+
+        final CompletableFuture<?>[] trees = getForest().stream()
+                .map(node -> node.generateTreeModel(Map.of(), target, scope))
+                .toArray(CompletableFuture<?>[]::new);
+        return CompletableFuture.allOf(trees);
+    }
+
+    /**
+     * The next graph fetched, waiting no longer than the deadline; END once the deadline has passed (expiring the scope).
+     */
+    private static Graph next(final BlockingQueue<Graph> fetched, final ExecutionScope scope) {
+
+        try {
+            final var graph = scope.hasDeadline() && scope.remainingMillis() == 0
+                    ? null
+                    : fetched.poll(scope.remainingMillis(), TimeUnit.MILLISECONDS);
+            if (graph == null) {
+                log.warn("Execution deadline of {} ms exceeded, cancelling outstanding fetches", scope.getTimeout());
+                scope.expire();
+                return END;
+            }
+            return graph;
+        } catch (InterruptedException e) {
+            scope.expire();
+            Thread.currentThread().interrupt();
+            return END;
+        }
+    }
+
+    /**
+     * As {@link #generateStore(ExecutionScope)}, as a Jena model.
+     */
+    public Model generateModel(final ExecutionScope scope) {
+        return generateStore(scope).toModel();
     }
 
     public String toString() {
@@ -54,9 +150,24 @@ public class ExecutionForest  {
 
     public Map<String, String> getFullLdContext() {
 
-        final Map<String, String> result = new HashMap<>();
-        getForest().forEach(child -> result.putAll(child.getFullLdContext()));
-        return result;
+        if (fullLdContext == null) {
+            final Map<String, String> result = new HashMap<>();
+            getForest().forEach(child -> result.putAll(child.getFullLdContext()));
+            fullLdContext = Collections.unmodifiableMap(result);
+        }
+        return fullLdContext;
+    }
+
+    /**
+     * The plan of the JSON response of the query this forest was planned from, compiled by the given function
+     * on first use.
+     */
+    public Optional<ResponsePlan> getResponsePlan(final Supplier<Optional<ResponsePlan>> compiler) {
+
+        if (responsePlan == null) {
+            responsePlan = compiler.get();
+        }
+        return responsePlan;
     }
 
 }
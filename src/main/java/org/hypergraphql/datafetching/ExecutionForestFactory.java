@@ -30,7 +30,7 @@ public class ExecutionForestFactory {
         return forest;
     }
 
-    private SelectionSet selectionSet(final Document queryDocument) {
+    static SelectionSet selectionSet(final Document queryDocument) {
 
         final var definition = queryDocument.getDefinitions().get(0);
 
@@ -45,7 +45,7 @@ public class ExecutionForestFactory {
         throw new IllegalArgumentException(queryDocument.getClass().getName() + " is not supported");
     }
 
-    private SelectionSet getFragmentSelectionSet(final Document queryDocument) {
+    private static SelectionSet getFragmentSelectionSet(final Document queryDocument) {
 
         // NPE
         final var fragmentDefinition = (FragmentDefinition) queryDocument.getDefinitions().get(0);
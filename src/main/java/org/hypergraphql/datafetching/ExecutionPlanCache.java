@@ -0,0 +1,164 @@
+package org.hypergraphql.datafetching;
+
+import graphql.language.Argument;
+import graphql.language.AstPrinter;
+import graphql.language.AstTransformer;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.Node;
+import graphql.language.NodeVisitorStub;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.language.VariableReference;
+import graphql.util.TraversalControl;
+import graphql.util.TraverserContext;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.hypergraphql.query.plan.PlanArguments;
+
+import static graphql.util.TreeTransformerUtil.changeNode;
+
+/**
+ * Bounded LRU cache of execution plans ({@link ExecutionForest}s), keyed by the normalised text of the
+ * query document. Plans are immutable once built - everything that varies between requests (input
+ * URIs, results, the deadline) travels with the request's {@link ExecutionScope} - so one plan is
+ * shared by every request with the same query shape.
+ *
+ * The shape is the document as printed by graphql-java, i.e. independent of whitespace, comments and
+ * formatting, with the values of field arguments left out: {@code limit: 2} and {@code limit: 3} share a plan.
+ * A cached plan is bound to the argument values of each request ({@link ExecutionForest#bind}); input URIs
+ * coming from parent results are bound at execution time.
+ */
+public class ExecutionPlanCache {
+
+    // stands for every argument value in a shape
+    private static final VariableReference ARGUMENT = VariableReference.newVariableReference().name("argument").build();
+
+    private final int maxSize;
+    private final Map<String, ExecutionForest> plans;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    public ExecutionPlanCache(final int maxSize) {
+
+        this.maxSize = maxSize;
+        this.plans = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, ExecutionForest> eldest) {
+                final var evict = size() > ExecutionPlanCache.this.maxSize;
+                if (evict) {
+                    evictions.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+    }
+
+    public ExecutionForest getPlan(final Document queryDocument, final Supplier<ExecutionForest> compiler) {
+
+        if (maxSize <= 0) {
+            misses.incrementAndGet();
+            return compiler.get();
+        }
+
+        final var shape = shapeOf(queryDocument);
+        synchronized (plans) {
+            final var cached = plans.get(shape);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached.bind(argumentsOf(queryDocument));
+            }
+        }
+
+        // compiled outside the lock; two requests racing on a new shape may both compile it
+        misses.incrementAndGet();
+        final var plan = compiler.get();
+        final ExecutionForest winner;
+        synchronized (plans) {
+            winner = plans.computeIfAbsent(shape, key -> plan);
+        }
+        return winner == plan ? plan : winner.bind(argumentsOf(queryDocument));
+    }
+
+    public void clear() {
+
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    public int size() {
+
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public Map<String, Object> getStats() {
+
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    static String shapeOf(final Document queryDocument) {
+
+        final var normalised = new AstTransformer().transform(queryDocument, new NodeVisitorStub() {
+            @Override
+            @SuppressWarnings("rawtypes") // graphql-java declares the context's node type raw
+            public TraversalControl visitArgument(final Argument node, final TraverserContext<Node> context) {
+                // the arguments of directives decide what the query selects, so they stay
+                if (context.getParentNode() instanceof Field) {
+                    return changeNode(context, node.transform(argument -> argument.value(ARGUMENT)));
+                }
+                return TraversalControl.CONTINUE;
+            }
+        });
+        return AstPrinter.printAst(normalised);
+    }
+
+    /**
+     * @return the arguments of the fields of the given query, by path (see {@link org.hypergraphql.query.plan.PlanField#getPath()})
+     */
+    static Map<String, PlanArguments> argumentsOf(final Document queryDocument) {
+
+        final Map<String, PlanArguments> arguments = new HashMap<>();
+        collectArguments(ExecutionForestFactory.selectionSet(queryDocument), null, arguments);
+        return arguments;
+    }
+
+    private static void collectArguments(final SelectionSet selectionSet,
+                                         final String parentPath,
+                                         final Map<String, PlanArguments> arguments) {
+
+        if (selectionSet == null) {
+            return;
+        }
+        for (final Selection<?> selection : selectionSet.getSelections()) {
+            if (selection instanceof Field) {
+                final var field = (Field) selection;
+                final var path = ExecutionTreeNode.pathOf(parentPath, field);
+                if (!field.getArguments().isEmpty()) {
+                    arguments.put(path, PlanArguments.of(field.getArguments()));
+                }
+                collectArguments(field.getSelectionSet(), path, arguments);
+            }
+        }
+    }
+}
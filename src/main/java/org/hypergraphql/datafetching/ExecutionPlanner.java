@@ -0,0 +1,102 @@
+package org.hypergraphql.datafetching;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.hypergraphql.datafetching.services.Service;
+
+/**
+ * Planning pass over an {@link ExecutionForest}. The forest built from a query holds one execution node
+ * per (parent marker, service) pair, so a type with several object fields resolved by the same remote
+ * service costs one round trip per field. This pass merges such sibling nodes into a single execution
+ * per service and level, whose query has one branch per marker; the markers in the merged result are
+ * still distinct, so each child execution takes its input from the markers it was planned for.
+ *
+ * Query fields (the roots of the forest) are not merged.
+ */
+public final class ExecutionPlanner {
+
+    private ExecutionPlanner() {
+    }
+
+    /**
+     * Plans the executions of every node of the forest, merging same-service siblings. The forest is
+     * updated in place and returned.
+     */
+    public static ExecutionForest mergeSiblings(final ExecutionForest forest) {
+
+        forest.getForest().forEach(root -> root.setExecutionChildren(mergeLevel(root.logicalChildren())));
+        return forest;
+    }
+
+    static List<ExecutionTreeNode> mergeLevel(final Collection<ExecutionTreeNode> siblings) {
+
+        final Map<Service, List<ExecutionTreeNode>> byService = new LinkedHashMap<>();
+        siblings.forEach(sibling -> byService.computeIfAbsent(sibling.getService(), service -> new ArrayList<>()).add(sibling));
+
+        final List<ExecutionTreeNode> executions = new ArrayList<>();
+        byService.values().forEach(group -> {
+            final ExecutionTreeNode execution;
+            if (group.size() == 1) {
+                execution = group.get(0);
+            } else {
+                execution = new ExecutionTreeNode(group);
+            }
+            execution.setExecutionChildren(mergeLevel(execution.logicalChildren()));
+            executions.add(execution);
+        });
+        return executions;
+    }
+
+    /**
+     * Describes the forest as built from the query ("logical": one execution per marker and service)
+     * and as it is run ("physical"), with the number of remote queries each plan issues (before any
+     * chunking of large inputs).
+     */
+    public static Map<String, Object> explain(final ExecutionForest forest) {
+
+        final List<Map<String, Object>> logical = new ArrayList<>();
+        final List<Map<String, Object>> physical = new ArrayList<>();
+        forest.getForest().forEach(root -> {
+            logical.add(describe(root, ExecutionTreeNode::logicalChildren));
+            physical.add(describe(root, ExecutionTreeNode::getExecutionChildren));
+        });
+
+        final Map<String, Object> queries = new LinkedHashMap<>();
+        queries.put("logical", count(forest.getForest(), ExecutionTreeNode::logicalChildren));
+        queries.put("physical", count(forest.getForest(), ExecutionTreeNode::getExecutionChildren));
+
+        final Map<String, Object> explanation = new LinkedHashMap<>();
+        explanation.put("logical", logical);
+        explanation.put("physical", physical);
+        explanation.put("remoteQueries", queries);
+        return explanation;
+    }
+
+    private static Map<String, Object> describe(final ExecutionTreeNode node,
+                                                final Function<ExecutionTreeNode, List<ExecutionTreeNode>> children) {
+
+        final Map<String, Object> description = new LinkedHashMap<>();
+        description.put("service", node.getService() == null ? null : node.getService().getId());
+        description.put("type", node.getRootType());
+        description.put("input", node.getQuery().getInputMarkers());
+        description.put("query", node.getQuery().toString());
+        final List<Map<String, Object>> childDescriptions = new ArrayList<>();
+        children.apply(node).forEach(child -> childDescriptions.add(describe(child, children)));
+        description.put("children", childDescriptions);
+        return description;
+    }
+
+    private static int count(final Collection<ExecutionTreeNode> nodes,
+                             final Function<ExecutionTreeNode, List<ExecutionTreeNode>> children) {
+
+        int total = 0;
+        for (final ExecutionTreeNode node : nodes) {
+            total += 1 + count(children.apply(node), children);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,198 @@
+package org.hypergraphql.datafetching;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * All of the fetching work done for one GraphQL request.
+ *
+ * Every task forked while answering the request goes through its scope, which is closed once the
+ * request's model has been generated. Closing cancels (and interrupts) anything still running, so
+ * no fetch outlives the request that started it, however far the query fanned out.
+ *
+ * A scope may carry a deadline. Once it passes, the scope expires: no further work is forked, running
+ * tasks are interrupted and the hooks registered through {@link #onCancel(Runnable)} (which abort
+ * in-flight SPARQL and HTTP calls) are run.
+ */
+@Slf4j
+public class ExecutionScope implements AutoCloseable {
+
+    private static final long NO_DEADLINE = 0;
+
+    private final FetchExecutor executor;
+    private final long timeout;
+    private final long deadline;
+    private final Queue<Future<?>> forked = new ConcurrentLinkedQueue<>();
+    private final Set<Runnable> cancelHooks = ConcurrentHashMap.newKeySet();
+    private final Set<String> saturatedServices = ConcurrentHashMap.newKeySet();
+    private final FetchBatcher batcher;
+    private volatile boolean closed;
+    private volatile boolean expired;
+
+    ExecutionScope(final FetchExecutor executor, final long timeout, final long batchWindow) {
+
+        this.executor = executor;
+        this.timeout = Math.max(timeout, NO_DEADLINE);
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeout);
+        this.batcher = new FetchBatcher(this, batchWindow);
+    }
+
+    public <T> Future<T> fork(final Callable<T> task) {
+
+        if (closed || expired) {
+            throw new RejectedExecutionException("Execution scope has already been " + (expired ? "expired" : "closed"));
+        }
+        final Future<T> future = executor.submit(task);
+        forked.add(future);
+        return future;
+    }
+
+    /**
+     * Forks a task whose result feeds a non-blocking pipeline; nothing waits on a thread for it to finish.
+     */
+    public <T> CompletableFuture<T> supplyAsync(final Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, command -> fork(Executors.callable(command)));
+    }
+
+    public <T> T join(final Future<T> future) throws InterruptedException, ExecutionException {
+        return executor.await(future);
+    }
+
+    /**
+     * Waits for the given work until the deadline, expiring the scope if it is not done by then.
+     *
+     * @return true if the work completed in time
+     */
+    public boolean awaitDeadline(final CompletableFuture<?> future) {
+
+        try {
+            if (hasDeadline()) {
+                future.get(remainingMillis(), TimeUnit.MILLISECONDS);
+            } else {
+                future.get();
+            }
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("Execution deadline of {} ms exceeded, cancelling outstanding fetches", timeout);
+            expire();
+            return false;
+        } catch (InterruptedException e) {
+            expire();
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            log.error("Problem executing request", e);
+            return true;
+        }
+    }
+
+    /**
+     * Registers an action that aborts some in-flight call when the scope is cancelled.
+     *
+     * @return an action that removes the registration again, once the call has completed
+     */
+    public Runnable onCancel(final Runnable hook) {
+
+        cancelHooks.add(hook);
+        if (expired || closed) {
+            hook.run();
+        }
+        return () -> cancelHooks.remove(hook);
+    }
+
+    public boolean hasDeadline() {
+        return timeout > NO_DEADLINE;
+    }
+
+    /**
+     * @return milliseconds left until the deadline (never negative), or Long.MAX_VALUE without a deadline
+     */
+    public long remainingMillis() {
+
+        if (!hasDeadline()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Batches the fetches of this request's execution nodes.
+     */
+    public FetchBatcher getBatcher() {
+        return batcher;
+    }
+
+    /**
+     * Records that a query of this request was turned away by the bulkhead of the given service.
+     */
+    void saturated(final String serviceId) {
+        saturatedServices.add(serviceId);
+    }
+
+    /**
+     * The services whose bulkheads turned away queries of this request, which is therefore missing their data.
+     */
+    public Set<String> getSaturatedServices() {
+        return Set.copyOf(saturatedServices);
+    }
+
+    public int getForkCount() {
+        return forked.size();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public boolean isActive() {
+        return !closed && !expired;
+    }
+
+    public boolean isExpired() {
+        return expired;
+    }
+
+    public void expire() {
+
+        if (expired || closed) {
+            return;
+        }
+        expired = true;
+        cancelOutstanding();
+    }
+
+    @Override
+    public void close() {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+        cancelOutstanding();
+        executor.scopeClosed(this);
+    }
+
+    private void cancelOutstanding() {
+
+        forked.forEach(future -> future.cancel(true));
+        cancelHooks.forEach(Runnable::run);
+        cancelHooks.clear();
+        batcher.cancel();
+    }
+}
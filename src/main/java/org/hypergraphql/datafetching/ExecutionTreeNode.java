@@ -1,52 +1,44 @@
 package org.hypergraphql.datafetching;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import graphql.language.Argument;
-import graphql.language.BooleanValue;
 import graphql.language.Field;
-import graphql.language.IntValue;
 import graphql.language.Selection;
 import graphql.language.SelectionSet;
-import graphql.language.StringValue;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import lombok.Getter;
-import org.apache.jena.rdf.model.Model;
+import org.apache.jena.graph.Graph;
 import org.hypergraphql.config.schema.HGQLVocabulary;
 import org.hypergraphql.datafetching.services.Service;
 import org.hypergraphql.datamodel.HGQLSchema;
 import org.hypergraphql.exception.HGQLConfigurationException;
+import org.hypergraphql.exception.HGQLServiceSaturatedException;
+import org.hypergraphql.query.plan.PlanArguments;
+import org.hypergraphql.query.plan.PlanField;
+import org.hypergraphql.query.plan.PlanQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static org.hypergraphql.util.HGQLConstants.ALIAS;
-import static org.hypergraphql.util.HGQLConstants.ARGS;
-import static org.hypergraphql.util.HGQLConstants.FIELDS;
-import static org.hypergraphql.util.HGQLConstants.NAME;
-import static org.hypergraphql.util.HGQLConstants.NODE_ID;
-import static org.hypergraphql.util.HGQLConstants.PARENT_ID;
-import static org.hypergraphql.util.HGQLConstants.TARGET_NAME;
-
 @Getter
 public class ExecutionTreeNode {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionTreeNode.class);
 
-    private Service service; // getService configuration
-    private JsonNode query; // GraphQL in a basic Json format
+    private final Service service; // getService configuration
+    private final PlanQuery query; // the typed plan of the fields this node fetches
     private final String executionId; // unique identifier of this execution node
     private final Map<String, ExecutionForest> childrenNodes; // succeeding executions
     private final String rootType;
     private final Map<String, String> ldContext;
     private final HGQLSchema hgqlSchema;
+    private List<ExecutionTreeNode> executionChildren; // what is actually run after this node, see ExecutionPlanner
 
     ExecutionTreeNode(final Field field, final String nodeId, final HGQLSchema schema) {
 
@@ -54,6 +46,7 @@ public class ExecutionTreeNode {
             this.service = schema.getQueryFields().get(field.getName()).service();
         } else if (schema.getFields().containsKey(field.getName())) {
             LOGGER.info("here");
+            this.service = null;
         } else {
             throw new HGQLConfigurationException("Field '" + field.getName() + "' not found in schema");
         }
@@ -63,12 +56,14 @@ public class ExecutionTreeNode {
         this.ldContext.putAll(HGQLVocabulary.JSONLD);
         this.rootType = "Query";
         this.hgqlSchema = schema;
-        this.query = getFieldJson(field, null, nodeId, "Query");
+        this.query = PlanQuery.root(service, getPlanField(field, null, nodeId, null, "Query"));
+        this.executionChildren = logicalChildren();
     }
 
     private ExecutionTreeNode(final Service service,
                               final Collection<Field> fields,
                               final String parentId,
+                              final String parentPath,
                               final String parentType,
                               final HGQLSchema schema) {
 
@@ -78,16 +73,87 @@ public class ExecutionTreeNode {
         this.ldContext = new HashMap<>();
         this.rootType = parentType;
         this.hgqlSchema = schema;
-        this.query = getFieldsJson(fields, parentId, parentType);
+        this.query = PlanQuery.fieldsOf(service, parentType, getPlanFields(fields, parentId, parentPath, parentType));
         this.ldContext.putAll(HGQLVocabulary.JSONLD);
+        this.executionChildren = logicalChildren();
     }
 
-    public void setService(final Service service) {
-        this.service = service;
+    /**
+     * A single execution of the given sibling nodes, which all fetch from the same service.
+     */
+    ExecutionTreeNode(final List<ExecutionTreeNode> siblings) {
+
+        final var first = siblings.get(0);
+        this.service = first.getService();
+        this.executionId = createId();
+        this.childrenNodes = new HashMap<>();
+        this.ldContext = new HashMap<>();
+        siblings.forEach(sibling -> {
+            this.childrenNodes.putAll(sibling.getChildrenNodes());
+            this.ldContext.putAll(sibling.getLdContext());
+        });
+        this.hgqlSchema = first.getHgqlSchema();
+        this.query = PlanQuery.merge(service, siblings.stream().map(ExecutionTreeNode::getQuery).collect(Collectors.toList()));
+        this.rootType = query.getRootType();
+        this.executionChildren = logicalChildren();
+    }
+
+    /**
+     * A copy of the given node for other arguments, with its children bound as well.
+     */
+    private ExecutionTreeNode(final ExecutionTreeNode planned,
+                              final Map<String, PlanArguments> arguments,
+                              final Map<ExecutionTreeNode, ExecutionTreeNode> bound) {
+
+        this.service = planned.service;
+        this.executionId = createId();
+        this.childrenNodes = new HashMap<>();
+        planned.childrenNodes.forEach((marker, forest) -> this.childrenNodes.put(marker, forest.bind(arguments, bound)));
+        this.ldContext = planned.ldContext;
+        this.rootType = planned.rootType;
+        this.hgqlSchema = planned.hgqlSchema;
+        this.query = planned.query.bind(arguments);
+        this.executionChildren = planned.executionChildren.stream().map(child -> child.bind(arguments, bound)).collect(Collectors.toList());
+    }
+
+    /**
+     * @param arguments the arguments of a query with the same plan, by field path
+     * @param bound the nodes bound so far, as merged executions share the children of the nodes they were merged from
+     * @return this node with the given arguments
+     */
+    ExecutionTreeNode bind(final Map<String, PlanArguments> arguments, final Map<ExecutionTreeNode, ExecutionTreeNode> bound) {
+
+        final var existing = bound.get(this);
+        if (existing != null) {
+            return existing;
+        }
+        final var copy = new ExecutionTreeNode(this, arguments, bound);
+        bound.put(this, copy);
+        return copy;
+    }
+
+    /**
+     * @return whether this node and its children have the given arguments (merged executions have the fields of
+     * the children they were merged from)
+     */
+    boolean isBoundTo(final Map<String, PlanArguments> arguments) {
+
+        return query.getFields().stream().allMatch(field -> field.isBoundTo(arguments))
+                && childrenNodes.values().stream().allMatch(forest -> forest.isBoundTo(arguments));
+    }
+
+    /**
+     * Every node of every child forest, i.e. one execution per (marker, service).
+     */
+    List<ExecutionTreeNode> logicalChildren() {
+
+        final List<ExecutionTreeNode> children = new ArrayList<>();
+        childrenNodes.values().forEach(forest -> children.addAll(forest.getForest()));
+        return children;
     }
 
-    public void setQuery(final JsonNode query) {
-        this.query = query;
+    void setExecutionChildren(final List<ExecutionTreeNode> executionChildren) {
+        this.executionChildren = List.copyOf(executionChildren);
     }
 
     Map<String, String> getFullLdContext() {
@@ -125,54 +191,58 @@ public class ExecutionTreeNode {
         return result.append("\n").toString();
     }
 
-    private JsonNode getFieldsJson(final Collection<Field> fields,
-                                   final String parentId,
-                                   final String parentType) {
+    private List<PlanField> getPlanFields(final Collection<Field> fields,
+                                          final String parentId,
+                                          final String parentPath,
+                                          final String parentType) {
 
-        final var mapper = new ObjectMapper();
-        final var queryNode = mapper.createArrayNode();
+        final List<PlanField> planFields = new ArrayList<>();
 
         int i = 0;
         for (final Field field : fields) {
             i++;
             final String nodeId = parentId + "_" + i;
-            queryNode.add(getFieldJson(field, parentId, nodeId, parentType));
+            planFields.add(getPlanField(field, parentId, nodeId, parentPath, parentType));
         }
-        return queryNode;
+        return planFields;
     }
 
-    private JsonNode getFieldJson(final Field field,
-                                  final String parentId,
-                                  final String nodeId,
-                                  final String parentType) {
-
-        final var mapper = new ObjectMapper();
-        final var queryNode = mapper.createObjectNode();
-
-        queryNode.put(NAME, field.getName());
-        queryNode.put(ALIAS, field.getAlias());
-        queryNode.put(PARENT_ID, parentId);
-        queryNode.put(NODE_ID, nodeId);
-        final List<Argument> args = field.getArguments();
+    private PlanField getPlanField(final Field field,
+                                   final String parentId,
+                                   final String nodeId,
+                                   final String parentPath,
+                                   final String parentType) {
 
         final var contextLdKey = (field.getAlias() == null) ? field.getName() : field.getAlias();
+        final var path = pathOf(parentPath, field);
         final var contextLdValue = getContextLdValue(contextLdKey);
 
         this.ldContext.put(contextLdKey, contextLdValue);
 
-        if (args.isEmpty()) {
-            queryNode.set(ARGS, null);
-        } else {
-            queryNode.set(ARGS, getArgsJson(args));
-        }
-
         final var fieldConfig = hgqlSchema.getTypes().get(parentType).getField(field.getName());
         final var targetName = fieldConfig.getTargetName();
 
-        queryNode.put(TARGET_NAME, targetName);
-        queryNode.set(FIELDS, this.traverse(field, nodeId, parentType));
+        return new PlanField(
+                field.getName(),
+                field.getAlias(),
+                parentId,
+                nodeId,
+                path,
+                PlanArguments.of(field.getArguments()),
+                targetName,
+                this.traverse(field, nodeId, path, parentType),
+                hgqlSchema
+        );
+    }
 
-        return queryNode;
+    /**
+     * The path of a field below the given one (null for a query field): the response keys down to the field, which
+     * identify it within a query, as fields with the same response key are merged into one by GraphQL.
+     */
+    static String pathOf(final String parentPath, final Field field) {
+
+        final var key = (field.getAlias() == null) ? field.getName() : field.getAlias();
+        return parentPath == null ? key : parentPath + '/' + key;
     }
 
     private String getContextLdValue(final String contextLdKey) {
@@ -185,7 +255,7 @@ public class ExecutionTreeNode {
     }
 
     @SuppressWarnings({"checkstyle:NestedIfDepth"}) // TODO - address this
-    private JsonNode traverse(final Field field, final String parentId, final String parentType) {
+    private List<PlanField> traverse(final Field field, final String parentId, final String path, final String parentType) {
 
         final var subFields = field.getSelectionSet();
         if (subFields != null) {
@@ -203,6 +273,7 @@ public class ExecutionTreeNode {
                             entry.getKey(),
                             entry.getValue(),
                             parentId,
+                            path,
                             targetName,
                             hgqlSchema
                     );
@@ -220,44 +291,10 @@ public class ExecutionTreeNode {
             if (serviceCalls.contains(this.service)) {
 
                 final Collection<Field> subfields = splitFields.get(this.service);
-                return getFieldsJson(subfields, parentId, targetName);
-            }
-        }
-        return null;
-    }
-
-    private JsonNode getArgsJson(final List<Argument> args) {
-
-        final var mapper = new ObjectMapper();
-        final var argNode = mapper.createObjectNode();
-
-        for (final Argument arg : args) {
-
-            final var value = arg.getValue();
-            final var type = value.getClass().getSimpleName();
-
-            switch (type) {
-                case "IntValue":
-                    argNode.put(arg.getName(), ((IntValue) value).getValue());
-                    break;
-                case "StringValue":
-                    argNode.put(arg.getName(), ((StringValue) value).getValue());
-                    break;
-                case "BooleanValue":
-                    argNode.put(arg.getName(), ((BooleanValue) value).isValue());
-                    break;
-                case "ArrayValue":
-                    final var arrayNode = mapper.createArrayNode();
-                    value.getChildren().forEach(child -> arrayNode.add(((StringValue) child).getValue()));
-                    argNode.set(arg.getName(), arrayNode);
-                    break;
-                default:
-                    break; // this might cause problems
+                return getPlanFields(subfields, parentId, path, targetName);
             }
-
         }
-
-        return argNode;
+        return List.of();
     }
 
     @SuppressWarnings("checkstyle:NestedIfDepth")
@@ -301,36 +338,72 @@ public class ExecutionTreeNode {
         return "execution-" + UUID.randomUUID();
     }
 
-    Model generateTreeModel(final Collection<String> input) {
+    /**
+     * Calls this node's service, without fetching any children.
+     */
+    TreeExecutionResult fetch(final Map<String, Collection<String>> input, final ExecutionScope scope) {
 
-        final var executionResult = service.executeQuery(query, input, childrenNodes.keySet(), rootType, hgqlSchema);
-        final Map<String, Collection<String>> resultSet = executionResult.getResultSet();
-        final var model = executionResult.getModel();
-        final Collection<Model> computedModels = new HashSet<>();
-        //    StoredModel.getInstance().add(model);
-        final Collection<String> vars = resultSet.keySet();
-        final var executor = Executors.newFixedThreadPool(50);
-        final Collection<Future<Model>> futureModels = new HashSet<>();
-        vars.forEach(var -> {
-            final var executionChildren = this.childrenNodes.get(var);
-            if (executionChildren.getForest().size() > 0) {
-                final Collection<String> values = resultSet.get(var);
-                executionChildren.getForest().forEach(node -> {
-                    final var childExecution = new FetchingExecution(values, node);
-                    futureModels.add(executor.submit(childExecution));
+        final var bulkhead = service.getBulkhead();
+        if (bulkhead == null) {
+            return service.executeQuery(query, input, childrenNodes.keySet(), rootType, hgqlSchema, scope);
+        }
+        try {
+            return bulkhead.execute(scope, () -> service.executeQuery(query, input, childrenNodes.keySet(), rootType, hgqlSchema, scope));
+        } catch (HGQLServiceSaturatedException e) {
+            scope.saturated(e.getServiceId());
+            throw e;
+        }
+    }
+
+    CompletableFuture<Void> generateTreeModel(final Map<String, Collection<String>> input,
+                                              final Consumer<Graph> target,
+                                              final ExecutionScope scope) {
+
+        final var batcher = scope.getBatcher();
+        return batcher.fetch(this, input)
+                .handle((executionResult, error) -> {
+                    try {
+                        if (error != null) {
+                            LOGGER.error("Problem fetching execution result", error);
+                            return CompletableFuture.<Void>completedFuture(null);
+                        }
+                        return generateChildren(executionResult, target, scope);
+                    } finally {
+                        // the children (if any) have been queued, which may complete the current level
+                        batcher.release();
+                    }
+                })
+                .thenCompose(children -> children)
+                .exceptionally(e -> {
+                    LOGGER.error("Problem adding execution result", e);
+                    return null;
                 });
-            }
-        });
+    }
 
-        futureModels.forEach(futureModel -> {
-            try {
-                computedModels.add(futureModel.get());
-            } catch (InterruptedException
-                    | ExecutionException e) {
-                LOGGER.error("Problem adding execution result", e);
+    private CompletableFuture<Void> generateChildren(final TreeExecutionResult executionResult,
+                                                     final Consumer<Graph> target,
+                                                     final ExecutionScope scope) {
+
+        // merge as soon as this node is done, and start every child without waiting for its siblings
+        target.accept(executionResult.getModel().getGraph());
+        if (!scope.isActive()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final Map<String, Collection<String>> resultSet = executionResult.getResultSet();
+        final List<CompletableFuture<Void>> children = new ArrayList<>();
+        for (final ExecutionTreeNode child : executionChildren) {
+            final Map<String, Collection<String>> childInput = new HashMap<>();
+            child.getQuery().getInputMarkers().forEach(marker -> {
+                final var values = resultSet.get(marker);
+                if (values != null && !values.isEmpty()) {
+                    childInput.put(marker, values);
+                }
+            });
+            if (!childInput.isEmpty()) {
+                children.add(child.generateTreeModel(childInput, target, scope));
             }
-        });
-        computedModels.forEach(model::add);
-        return model;
+        }
+        return CompletableFuture.allOf(children.toArray(CompletableFuture<?>[]::new));
     }
 }
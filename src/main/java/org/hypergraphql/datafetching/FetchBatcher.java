@@ -0,0 +1,291 @@
+package org.hypergraphql.datafetching;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.hypergraphql.query.plan.PlanQuery;
+
+/**
+ * DataLoader-style batching of the fetches of one request.
+ *
+ * Child executions in different branches of a query often send the same query shape to the same service,
+ * e.g. {@code author} under two top-level fields. Instead of fetching as soon as its input is known, a
+ * child execution is queued by (service, {@link org.hypergraphql.query.plan.PlanQuery#getShape() shape});
+ * a queue is sent as one call over the union of its input once no other execution of the request is
+ * still producing input (the current level is complete), or after the batch window at the latest.
+ * The model of the call is shared, and the markers of each queued execution are worked out from its own
+ * input, so every execution sees what it would have fetched alone.
+ *
+ * Query fields are fetched straight away. A batch window of 0 (the default) turns batching off. When the scope
+ * of the request is cancelled or expires, every fetch still queued or in flight fails at once.
+ *
+ * Fetches are also memoized for the lifetime of the request. An execution with the same service, query shape
+ * and input as an earlier one (e.g. the same child fields under two aliases of a query field) does not fetch
+ * again: it waits for the earlier, possibly still in-flight, call and works out its markers from that call's
+ * model.
+ */
+public class FetchBatcher {
+
+    private final ExecutionScope scope;
+    private final long window;
+    private final Map<String, List<Pending>> queued = new LinkedHashMap<>();
+    private final Map<String, CompletableFuture<Model>> memo = new ConcurrentHashMap<>();
+    private final Set<Pending> outstanding = ConcurrentHashMap.newKeySet();
+    private final AtomicLong fetches = new AtomicLong(0);
+    private final AtomicLong serviceCalls = new AtomicLong(0);
+    private final AtomicLong memoHits = new AtomicLong(0);
+    private int active;
+
+    FetchBatcher(final ExecutionScope scope, final long window) {
+
+        this.scope = scope;
+        this.window = window;
+    }
+
+    /**
+     * Fetches the data of an execution node. Once the node has started its children, it must call
+     * {@link #release()}, whether or not the fetch succeeded.
+     */
+    public CompletableFuture<TreeExecutionResult> fetch(final ExecutionTreeNode node, final Map<String, Collection<String>> input) {
+
+        fetches.incrementAndGet();
+        final var pending = new Pending(node, input);
+        outstanding.add(pending);
+        pending.result.whenComplete((result, error) -> outstanding.remove(pending));
+        final var previous = memo.putIfAbsent(memoKey(node, input), pending.fetched);
+        if (previous != null) {
+            memoHits.incrementAndGet();
+            return previous.handle((model, error) -> {
+                // counted once there is something to release, so waiting does not hold up the current level
+                synchronized (this) {
+                    active++;
+                }
+                if (error != null) {
+                    throw new CompletionException(error);
+                }
+                return reuse(model, node, input);
+            });
+        }
+
+        if (window <= 0 || node.getQuery().isRoot()) {
+            synchronized (this) {
+                active++;
+            }
+            dispatch(List.of(pending));
+            return pending.result;
+        }
+
+        final var key = node.getService().getId() + '\n' + node.getQuery().getShape();
+        final List<List<Pending>> ready;
+        synchronized (this) {
+            final var batch = queued.get(key);
+            if (batch == null) {
+                final List<Pending> newBatch = new ArrayList<>();
+                newBatch.add(pending);
+                queued.put(key, newBatch);
+                CompletableFuture.delayedExecutor(window, TimeUnit.MILLISECONDS).execute(() -> windowElapsed(key, newBatch));
+            } else {
+                batch.add(pending);
+            }
+            ready = active == 0 ? drain() : List.of();
+        }
+        ready.forEach(this::dispatch);
+        return pending.result;
+    }
+
+    /**
+     * Signals that a fetched node has started all of its children.
+     */
+    public void release() {
+
+        final List<List<Pending>> ready;
+        synchronized (this) {
+            active--;
+            ready = active == 0 ? drain() : List.of();
+        }
+        ready.forEach(this::dispatch);
+    }
+
+    /**
+     * Fails every fetch that has not completed yet, as the request's scope has been cancelled or has expired: a
+     * queued batch is not sent, and nothing waits for the calls that were.
+     */
+    void cancel() {
+
+        synchronized (this) {
+            queued.clear();
+        }
+        final var error = new CancellationException("The execution scope of the request was cancelled");
+        outstanding.forEach(pending -> pending.fail(error));
+    }
+
+    public long getFetches() {
+        return fetches.get();
+    }
+
+    public long getServiceCalls() {
+        return serviceCalls.get();
+    }
+
+    /**
+     * Fetches answered by an earlier, identical fetch of the same request.
+     */
+    public long getMemoHits() {
+        return memoHits.get();
+    }
+
+    /**
+     * The service, query shape and input of a fetch; the input is listed per canonical branch, so that
+     * identical executions of differently ordered fields get the same key.
+     */
+    private static String memoKey(final ExecutionTreeNode node, final Map<String, Collection<String>> input) {
+
+        final var key = new StringBuilder(node.getService().getId()).append('\n').append(node.getQuery().getShape());
+        for (final PlanQuery branch : node.getQuery().getCanonicalBranches()) {
+            key.append('\n');
+            final var values = branch.isRoot() ? null : input.get(branch.getParentId());
+            if (values != null) {
+                values.stream().sorted().forEach(value -> key.append(value).append(' '));
+            }
+        }
+        return key.toString();
+    }
+
+    private static TreeExecutionResult reuse(final Model fetched,
+                                             final ExecutionTreeNode node,
+                                             final Map<String, Collection<String>> input) {
+
+        // the model is already in the request's model
+        final var result = new TreeExecutionResult();
+        result.setModel(ModelFactory.createDefaultModel());
+        result.setResultSet(node.getService().getResultSet(
+                fetched, node.getQuery(), input, node.getChildrenNodes().keySet(), node.getHgqlSchema()));
+        return result;
+    }
+
+    private void windowElapsed(final String key, final List<Pending> batch) {
+
+        synchronized (this) {
+            if (queued.get(key) != batch) {
+                return; // already sent
+            }
+            queued.remove(key);
+            active += batch.size();
+        }
+        dispatch(batch);
+    }
+
+    // caller holds the lock
+    private List<List<Pending>> drain() {
+
+        final List<List<Pending>> ready = new ArrayList<>(queued.values());
+        queued.clear();
+        ready.forEach(batch -> active += batch.size());
+        return ready;
+    }
+
+    private void dispatch(final List<Pending> batch) {
+
+        serviceCalls.incrementAndGet();
+        final CompletableFuture<Call> call;
+        try {
+            call = scope.supplyAsync(() -> execute(batch));
+        } catch (RejectedExecutionException e) {
+            batch.forEach(pending -> pending.fail(e));
+            return;
+        }
+        call.whenComplete((done, error) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                if (error == null) {
+                    // memoized duplicates first, so they are counted as active before this execution releases
+                    batch.get(i).fetched.complete(done.model);
+                    batch.get(i).result.complete(done.results.get(i));
+                } else {
+                    batch.get(i).fail(error);
+                }
+            }
+        });
+    }
+
+    private Call execute(final List<Pending> batch) {
+
+        final var first = batch.get(0);
+        if (batch.size() == 1) {
+            final var result = first.node.fetch(first.input, scope);
+            return new Call(result.getModel(), List.of(result));
+        }
+
+        // every queued query has the same shape: their branches correspond by canonical position
+        final var representative = first.node;
+        final var branches = representative.getQuery().getCanonicalBranches();
+        final Map<String, Collection<String>> union = new HashMap<>();
+        batch.forEach(pending -> {
+            final var pendingBranches = pending.node.getQuery().getCanonicalBranches();
+            for (int i = 0; i < branches.size(); i++) {
+                final var values = pending.input.get(pendingBranches.get(i).getParentId());
+                if (values != null) {
+                    union.computeIfAbsent(branches.get(i).getParentId(), marker -> new HashSet<>()).addAll(values);
+                }
+            }
+        });
+        final var fetched = representative.fetch(union, scope);
+
+        final List<TreeExecutionResult> results = new ArrayList<>();
+        for (final Pending pending : batch) {
+            final var result = new TreeExecutionResult();
+            // the model goes into the request's model once; the markers are split per execution
+            result.setModel(results.isEmpty() ? fetched.getModel() : ModelFactory.createDefaultModel());
+            result.setResultSet(pending.node.getService().getResultSet(
+                    fetched.getModel(),
+                    pending.node.getQuery(),
+                    pending.input,
+                    pending.node.getChildrenNodes().keySet(),
+                    pending.node.getHgqlSchema()));
+            results.add(result);
+        }
+        return new Call(fetched.getModel(), results);
+    }
+
+    private static final class Call {
+
+        private final Model model;
+        private final List<TreeExecutionResult> results;
+
+        private Call(final Model model, final List<TreeExecutionResult> results) {
+            this.model = model;
+            this.results = results;
+        }
+    }
+
+    private static final class Pending {
+
+        private final ExecutionTreeNode node;
+        private final Map<String, Collection<String>> input;
+        private final CompletableFuture<TreeExecutionResult> result = new CompletableFuture<>();
+        private final CompletableFuture<Model> fetched = new CompletableFuture<>(); // the whole model of the call
+
+        private Pending(final ExecutionTreeNode node, final Map<String, Collection<String>> input) {
+            this.node = node;
+            this.input = input;
+        }
+
+        private void fail(final Throwable error) {
+            fetched.completeExceptionally(error);
+            result.completeExceptionally(error);
+        }
+    }
+}
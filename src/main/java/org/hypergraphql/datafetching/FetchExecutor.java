@@ -0,0 +1,196 @@
+package org.hypergraphql.datafetching;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.hypergraphql.config.system.ExecutionConfig;
+
+/**
+ * The single executor used to fetch data for every request served by one configuration.
+ * It is created with the {@link org.hypergraphql.config.system.HGQLConfig} and shut down by the
+ * {@link org.hypergraphql.Controller} that serves it. Requests do not submit to it directly;
+ * each one opens an {@link ExecutionScope}.
+ *
+ * In {@link ExecutionConfig.Mode#PLATFORM} mode this is a bounded thread pool. Fetching is recursive
+ * (tree nodes wait for their children, services wait for their chunks), so a caller waiting on a task
+ * through {@link #await(Future)} runs it itself if no worker has picked it up yet. This keeps a fully
+ * busy pool from deadlocking on its own queue.
+ *
+ * In {@link ExecutionConfig.Mode#VIRTUAL} mode every task gets its own virtual thread, so blocking on
+ * remote endpoints costs no pool capacity. The virtual thread factory is looked up reflectively, so
+ * the same build runs on JDKs without it (falling back to the platform pool).
+ */
+@Slf4j
+public class FetchExecutor {
+
+    private static final String THREAD_NAME_PREFIX = "hgql-fetch-";
+    private static final long SHUTDOWN_GRACE_SECONDS = 5;
+
+    private final ExecutionConfig.Mode mode;
+    private final long defaultTimeout;
+    private final long batchWindow;
+    private final ExecutorService executor;
+    private final ThreadPoolExecutor platformPool;
+    private final AtomicInteger running = new AtomicInteger(0);
+    private final AtomicInteger openScopes = new AtomicInteger(0);
+    private final AtomicLong fetches = new AtomicLong(0);
+    private final AtomicLong serviceCalls = new AtomicLong(0);
+    private final AtomicLong memoHits = new AtomicLong(0);
+
+    public FetchExecutor(final ExecutionConfig config) {
+
+        this.defaultTimeout = config.getTimeout();
+        this.batchWindow = config.getBatchWindow();
+        final var virtualExecutor = config.getMode() == ExecutionConfig.Mode.VIRTUAL ? virtualThreadExecutor() : null;
+        if (virtualExecutor == null) {
+            if (config.getMode() == ExecutionConfig.Mode.VIRTUAL) {
+                log.warn("Virtual threads are not available on this JVM, falling back to a platform thread pool");
+            }
+            this.mode = ExecutionConfig.Mode.PLATFORM;
+            this.platformPool = platformThreadPool(config);
+            this.executor = platformPool;
+        } else {
+            this.mode = ExecutionConfig.Mode.VIRTUAL;
+            this.platformPool = null;
+            this.executor = virtualExecutor;
+        }
+    }
+
+    public ExecutionScope openScope() {
+        return openScope(null);
+    }
+
+    /**
+     * @param timeout deadline in milliseconds for this scope; null for the configured default
+     */
+    public ExecutionScope openScope(final Long timeout) {
+
+        openScopes.incrementAndGet();
+        return new ExecutionScope(this, timeout == null ? defaultTimeout : timeout, batchWindow);
+    }
+
+    void scopeClosed(final ExecutionScope scope) {
+
+        openScopes.decrementAndGet();
+        fetches.addAndGet(scope.getBatcher().getFetches());
+        serviceCalls.addAndGet(scope.getBatcher().getServiceCalls());
+        memoHits.addAndGet(scope.getBatcher().getMemoHits());
+    }
+
+    public <T> Future<T> submit(final Callable<T> task) {
+
+        final RunnableFuture<T> future = new FutureTask<>(() -> {
+            running.incrementAndGet();
+            try {
+                return task.call();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        executor.execute(future);
+        return future;
+    }
+
+    public <T> T await(final Future<T> future) throws InterruptedException, ExecutionException {
+
+        if (future instanceof RunnableFuture) {
+            // a no-op when a worker has already started (or finished) the task
+            ((RunnableFuture<T>) future).run();
+        }
+        return future.get();
+    }
+
+    public ExecutionConfig.Mode getMode() {
+        return mode;
+    }
+
+    public int getActiveCount() {
+        return platformPool == null ? running.get() : platformPool.getActiveCount();
+    }
+
+    public int getQueueDepth() {
+        return platformPool == null ? 0 : platformPool.getQueue().size();
+    }
+
+    public Map<String, Object> getStats() {
+
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", mode.name().toLowerCase());
+        if (platformPool != null) {
+            stats.put("poolSize", platformPool.getPoolSize());
+            stats.put("maximumPoolSize", platformPool.getMaximumPoolSize());
+            stats.put("completedTasks", platformPool.getCompletedTaskCount());
+        }
+        stats.put("activeCount", getActiveCount());
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("openScopes", openScopes.get());
+        // executions requested vs. service calls made, after batching and memoization
+        stats.put("fetches", fetches.get());
+        stats.put("serviceCalls", serviceCalls.get());
+        stats.put("memoHits", memoHits.get());
+        return stats;
+    }
+
+    public void shutdown() {
+
+        log.info("Shutting down fetch executor ({} active, {} queued)", getActiveCount(), getQueueDepth());
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    private static ThreadPoolExecutor platformThreadPool(final ExecutionConfig config) {
+
+        final var threadCount = new AtomicInteger(0);
+        final var pool = new ThreadPoolExecutor(
+                config.getPoolSize(),
+                config.getPoolSize(),
+                config.getKeepAlive(),
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(config.getQueueSize()),
+                runnable -> {
+                    final var thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ExecutorService virtualThreadExecutor() {
+
+        try {
+            final var factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factoryMethod.invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            // pre-21 JDK (or preview features disabled)
+            log.debug("Virtual thread executor unavailable", e);
+            return null;
+        }
+    }
+}
@@ -1,26 +1,31 @@
 package org.hypergraphql.datafetching;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.jena.query.ARQ;
+import org.apache.jena.atlas.json.JsonParseException;
+import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.riot.web.HttpOp;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.apache.jena.sparql.resultset.ResultSetException;
 import org.hypergraphql.datafetching.services.SPARQLEndpointService;
 import org.hypergraphql.datamodel.HGQLSchema;
 import org.hypergraphql.query.converters.SPARQLServiceConverter;
+import org.hypergraphql.query.plan.PlanQuery;
 
 // Performs HTTP query to remote store
 @Slf4j
@@ -28,51 +33,104 @@ import org.hypergraphql.query.converters.SPARQLServiceConverter;
 @RequiredArgsConstructor
 public class SPARQLEndpointExecution implements Callable<SPARQLExecutionResult> {
 
-    private final JsonNode query;
-    private final Collection<String> inputSubset;
+    private final PlanQuery query;
+    private final Map<String, Collection<String>> inputSubset;
     private final Collection<String> markers;
     private final SPARQLEndpointService sparqlEndpointService;
     private final HGQLSchema schema;
     private final String rootType;
+    private final ExecutionScope scope;
 
     @Override
     public SPARQLExecutionResult call() {
-        final Map<String, Collection<String>> resultSet = new HashMap<>();
-        markers.forEach(marker -> resultSet.put(marker, new HashSet<>()));
-        final var unionModel = ModelFactory.createDefaultModel();
         final var converter = new SPARQLServiceConverter(schema);
         final var sparqlQuery = converter.getSelectQuery(query, inputSubset, rootType);
         log.debug(sparqlQuery);
 
-        final var credsProvider = new BasicCredentialsProvider();
-        final var credentials =
-                new UsernamePasswordCredentials(this.sparqlEndpointService.getUser(), this.sparqlEndpointService.getPassword());
-        credsProvider.setCredentials(AuthScope.ANY, credentials);
-        final var httpclient = HttpClients.custom()
-                .setDefaultCredentialsProvider(credsProvider)
-                .build();
-        HttpOp.setDefaultHttpClient(httpclient);
+        final var cache = sparqlEndpointService.getResultCache();
+        final var sparqlExecutionResult = cache == null ? fetch(sparqlQuery) : cache.get(sparqlQuery, markers, this::fetch);
+        log.debug("Result: {}", sparqlExecutionResult);
+        return sparqlExecutionResult;
+    }
+
+    /**
+     * Sends the query to the service.
+     */
+    protected SPARQLExecutionResult fetch(final String sparqlQuery) {
 
-        ARQ.init();
         final var jenaQuery = QueryFactory.create(sparqlQuery);
 
-        final var qEngine = QueryExecutionFactory.createServiceRequest(this.sparqlEndpointService.getUrl(), jenaQuery);
-        qEngine.setClient(httpclient);
-        //qEngine.setSelectContentType(ResultsFormat.FMT_RS_XML.getSymbol());
+        // asked again in the next format when the endpoint cannot serve (or garbles) the one it was asked for
+        while (true) {
+            final var format = sparqlEndpointService.getSelectFormat();
+            try {
+                return select(jenaQuery, format);
+            } catch (QueryExceptionHTTP e) {
+                if (e.getResponseCode() != HttpURLConnection.HTTP_NOT_ACCEPTABLE || !sparqlEndpointService.downgradeSelectFormat(format)) {
+                    throw e;
+                }
+            } catch (ResultSetException | RiotException | JsonParseException e) {
+                // only a response that could not be parsed; timeouts and endpoint errors say nothing about the format
+                if (!scope.isActive() || !sparqlEndpointService.downgradeSelectFormat(format)) {
+                    throw e;
+                }
+                log.warn("Results of {} could not be read, asking again", sparqlEndpointService.getId(), e);
+            }
+        }
+    }
 
-        final var results = qEngine.execSelect();
+    /**
+     * Runs the query, reading the solutions as they arrive rather than once the whole response is in.
+     */
+    private SPARQLExecutionResult select(final Query jenaQuery, final int format) {
 
-        results.forEachRemaining(solution -> {
-            markers.stream().filter(solution::contains).forEach(marker ->
-                    resultSet.get(marker).add(solution.get(marker).asResource().getURI()));
+        // the service's own pooled client, which carries its credentials
+        final var qEngine = QueryExecutionFactory.createServiceRequest(this.sparqlEndpointService.getUrl(), jenaQuery);
+        qEngine.setClient(this.sparqlEndpointService.getHttpClient());
+        // Jena only takes a single type as the select content type, which it reads a response without one as
+        qEngine.setAcceptHeader(this.sparqlEndpointService.getSelectAccept(format));
+        qEngine.setSelectContentType(this.sparqlEndpointService.getSelectContentType(format));
+        if (scope.hasDeadline()) {
+            qEngine.setTimeout(scope.remainingMillis());
+        }
 
-            unionModel.add(this.sparqlEndpointService.getModelFromResults(query, solution, schema));
-        });
+        final var unregister = scope.onCancel(qEngine::abort);
+        try {
+            return collect(qEngine.execSelect());
+        } finally {
+            unregister.run();
+            qEngine.close();
+        }
+    }
 
-        final var sparqlExecutionResult = new SPARQLExecutionResult(resultSet, unionModel);
-        log.debug("Result: {}", sparqlExecutionResult);
+    /**
+     * Reads the markers and the triples of every solution. The triples go straight into the graph of a single
+     * model, through the plan's {@link org.hypergraphql.query.plan.TripleTemplate}.
+     */
+    protected SPARQLExecutionResult collect(final ResultSet results) {
 
-        return sparqlExecutionResult;
+        final Map<String, Collection<String>> resultSet = new HashMap<>();
+        final var markerVars = new Var[markers.size()];
+        final List<Collection<String>> markerValues = new ArrayList<>();
+        for (final String marker : markers) {
+            markerVars[markerValues.size()] = Var.alloc(marker);
+            markerValues.add(resultSet.computeIfAbsent(marker, key -> new HashSet<>()));
+        }
+
+        final var unionModel = ModelFactory.createDefaultModel();
+        final var sink = StreamRDFLib.graph(unionModel.getGraph());
+        final var template = query.getTemplate();
+        while (results.hasNext()) {
+            final var binding = results.nextBinding();
+            for (int i = 0; i < markerVars.length; i++) {
+                final var value = binding.get(markerVars[i]);
+                if (value != null && value.isURI()) {
+                    markerValues.get(i).add(value.getURI());
+                }
+            }
+            template.emit(binding, sink);
+        }
+        return new SPARQLExecutionResult(resultSet, unionModel);
     }
 }
 
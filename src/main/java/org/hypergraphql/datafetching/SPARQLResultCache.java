@@ -0,0 +1,144 @@
+package org.hypergraphql.datafetching;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.hypergraphql.config.system.CacheConfig;
+
+/**
+ * The results of the SELECT queries sent to one service, shared by every request: a query whose text has been
+ * answered within the configured time to live is not sent again. Each service with caching enabled owns one, so
+ * results are keyed by (service, query text, markers). The markers are the ones read from the solutions for the
+ * children of the execution, which two executions sending the same query text need not share.
+ *
+ * Results are held compactly, their triples as RDF Thrift and their markers as arrays, and are bounded by their
+ * estimated size in bytes. Eviction is Caffeine's W-TinyLFU: a query answered once does not push out the ones
+ * that keep being asked.
+ */
+public class SPARQLResultCache {
+
+    // rough per-object costs on a 64-bit JVM, enough to weigh one result against another
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int STRING_OVERHEAD = 40;
+
+    private final CacheConfig config;
+    private final Cache<String, CachedResult> results;
+
+    public SPARQLResultCache(final CacheConfig config) {
+
+        this.config = config;
+        this.results = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxBytes())
+                .weigher((String key, CachedResult result) -> weightOf(key) + result.weight)
+                .expireAfterWrite(config.getTtl(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param markers the markers the result is read for
+     * @return the result of the query, cached or fetched by the given function (and then cached); a failed fetch
+     * is not cached
+     */
+    public SPARQLExecutionResult get(final String query,
+                                     final Collection<String> markers,
+                                     final Function<String, SPARQLExecutionResult> fetch) {
+
+        final var key = markers.stream().sorted().collect(Collectors.joining(" ")) + '\n' + query;
+        final var cached = results.getIfPresent(key);
+        if (cached != null) {
+            return cached.toResult();
+        }
+        // fetched outside the cache, so a slow endpoint holds up nothing but its own callers
+        final var result = fetch.apply(query);
+        results.put(key, new CachedResult(result));
+        return result;
+    }
+
+    public void invalidateAll() {
+        results.invalidateAll();
+    }
+
+    public Map<String, Object> getStats() {
+
+        final var stats = results.stats();
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", results.estimatedSize());
+        result.put("bytes", results.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        result.put("maxBytes", config.getMaxBytes());
+        result.put("ttl", config.getTtl());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    private static int weightOf(final String value) {
+        return STRING_OVERHEAD + 2 * value.length();
+    }
+
+    /**
+     * One result, as it is held in the cache.
+     */
+    private static final class CachedResult {
+
+        private final byte[] triples;
+        private final String[] markers;
+        private final String[][] values;
+        private final int weight;
+
+        private CachedResult(final SPARQLExecutionResult result) {
+
+            final var out = new ByteArrayOutputStream();
+            final var writer = StreamRDFWriter.getWriterStream(out, Lang.RDFTHRIFT);
+            writer.start();
+            result.getModel().getGraph().find().forEachRemaining(writer::triple);
+            writer.finish();
+            this.triples = out.toByteArray();
+
+            final var resultSet = result.getResultSet();
+            this.markers = new String[resultSet.size()];
+            this.values = new String[resultSet.size()][];
+            var size = OBJECT_OVERHEAD + triples.length;
+            var i = 0;
+            for (final Map.Entry<String, Collection<String>> marker : resultSet.entrySet()) {
+                markers[i] = marker.getKey();
+                values[i] = marker.getValue().toArray(new String[0]);
+                size += weightOf(markers[i]) + OBJECT_OVERHEAD;
+                for (final String value : values[i]) {
+                    size += weightOf(value);
+                }
+                i++;
+            }
+            this.weight = size;
+        }
+
+        /**
+         * @return a copy of the result, which the caller is free to change
+         */
+        private SPARQLExecutionResult toResult() {
+
+            final var model = ModelFactory.createDefaultModel();
+            RDFDataMgr.read(model, new ByteArrayInputStream(triples), Lang.RDFTHRIFT);
+            final Map<String, Collection<String>> resultSet = new HashMap<>();
+            for (int i = 0; i < markers.length; i++) {
+                resultSet.put(markers[i], new HashSet<>(Arrays.asList(values[i])));
+            }
+            return new SPARQLExecutionResult(resultSet, model);
+        }
+    }
+}
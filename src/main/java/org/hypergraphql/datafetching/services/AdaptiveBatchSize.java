@@ -0,0 +1,100 @@
+package org.hypergraphql.datafetching.services;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.hypergraphql.config.system.BatchingConfig;
+
+/**
+ * The number of URIs a SPARQL endpoint service sends per VALUES chunk, learnt from how the endpoint copes.
+ *
+ * A full chunk answered within {@link BatchingConfig#getFastResponse()} grows the size by half; a chunk that
+ * fails (most often a timeout, or a request the endpoint rejects as too large) halves it. The size stays within
+ * the configured floor and ceiling, and a chunk is also cut short once its URIs would exceed the configured
+ * number of bytes once URL-encoded, so that GET requests stay within what servers accept.
+ */
+public final class AdaptiveBatchSize {
+
+    private static final double GROWTH = 1.5;
+    private static final int VALUES_OVERHEAD = 7; // the encoded '<', '>' and separating space around each URI
+
+    private final BatchingConfig config;
+    private final AtomicInteger size;
+    private final AtomicLong succeeded = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong lastLatency = new AtomicLong(0);
+
+    AdaptiveBatchSize(final BatchingConfig config) {
+
+        this.config = config;
+        this.size = new AtomicInteger(config.getInitialSize());
+    }
+
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Takes the next chunk off the front of the given (marker, URI) pairs.
+     */
+    Map<String, Collection<String>> nextChunk(final Queue<Map.Entry<String, String>> markedUris) {
+
+        final var limit = size.get();
+        final Map<String, Collection<String>> chunk = new HashMap<>();
+        int count = 0;
+        int bytes = 0;
+        while (count < limit && !markedUris.isEmpty()) {
+            final var markedUri = markedUris.peek();
+            bytes += encodedLength(markedUri.getValue());
+            if (count > 0 && bytes > config.getMaxBytes()) {
+                break;
+            }
+            markedUris.remove();
+            chunk.computeIfAbsent(markedUri.getKey(), marker -> new HashSet<>()).add(markedUri.getValue());
+            count++;
+        }
+        return chunk;
+    }
+
+    /**
+     * Records how a chunk of the given number of URIs went.
+     */
+    void record(final int chunkSize, final long millis, final boolean success) {
+
+        lastLatency.set(millis);
+        if (success) {
+            succeeded.incrementAndGet();
+            if (millis <= config.getFastResponse()) {
+                size.updateAndGet(current -> chunkSize < current
+                        ? current // too little input to tell
+                        : Math.min(config.getMaxSize(), Math.max(current + 1, (int) (current * GROWTH))));
+            }
+        } else {
+            failed.incrementAndGet();
+            size.updateAndGet(current -> Math.max(config.getMinSize(), current / 2));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size.get());
+        stats.put("minSize", config.getMinSize());
+        stats.put("maxSize", config.getMaxSize());
+        stats.put("succeeded", succeeded.get());
+        stats.put("failed", failed.get());
+        stats.put("lastLatency", lastLatency.get());
+        return stats;
+    }
+
+    private static int encodedLength(final String uri) {
+        return URLEncoder.encode(uri, StandardCharsets.UTF_8).length() + VALUES_OVERHEAD;
+    }
+}
@@ -0,0 +1,43 @@
+package org.hypergraphql.datafetching.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How the queries of a SPARQL endpoint service were split into chunks, and how long the chunks took.
+ */
+final class ChunkStats {
+
+    private final AtomicLong queries = new AtomicLong(0);
+    private final AtomicLong chunks = new AtomicLong(0);
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong totalMillis = new AtomicLong(0);
+    private final AtomicLong maxMillis = new AtomicLong(0);
+
+    void scattered(final int chunkCount) {
+
+        queries.incrementAndGet();
+        chunks.addAndGet(chunkCount);
+    }
+
+    void completed(final long millis) {
+
+        completed.incrementAndGet();
+        totalMillis.addAndGet(millis);
+        maxMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    Map<String, Object> getStats() {
+
+        final Map<String, Object> stats = new LinkedHashMap<>();
+        final long queryCount = queries.get();
+        final long completedCount = completed.get();
+        stats.put("queries", queryCount);
+        stats.put("chunks", chunks.get());
+        stats.put("chunksPerQuery", queryCount == 0 ? 0.0 : (double) chunks.get() / queryCount);
+        stats.put("averageLatency", completedCount == 0 ? 0.0 : (double) totalMillis.get() / completedCount);
+        stats.put("maxLatency", maxMillis.get());
+        return stats;
+    }
+}
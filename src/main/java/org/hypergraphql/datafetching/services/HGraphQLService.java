@@ -1,38 +1,70 @@
 package org.hypergraphql.datafetching.services;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.Unirest;
-import com.mashape.unirest.http.exceptions.UnirestException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.hypergraphql.config.system.HttpConfig;
 import org.hypergraphql.config.system.ServiceConfig;
+import org.hypergraphql.datafetching.ExecutionScope;
 import org.hypergraphql.datafetching.TreeExecutionResult;
 import org.hypergraphql.datamodel.HGQLSchema;
 import org.hypergraphql.query.converters.HGraphQLConverter;
+import org.hypergraphql.query.plan.PlanQuery;
 
 @Slf4j
 public final class HGraphQLService extends Service {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String JSON_MEDIA_TYPE = "application/json";
+    // most compact first; RDF/XML is served by every version
+    private static final List<Format> FORMATS = List.of(
+            new Format("application/rdf+thrift", Lang.RDFTHRIFT),
+            new Format("application/ntriples", Lang.NTRIPLES),
+            new Format("application/rdf+xml", Lang.RDFXML)
+    );
+
+    private final AtomicInteger format = new AtomicInteger(0); // index of the format the remote service is asked for
     private String url;
+    private HttpConfig http;
+    private HttpClient client;
+    private ExecutorService clientExecutor; // the client's own threads, which it has no way of stopping itself
 
     @Override
     public TreeExecutionResult executeQuery(
-            final JsonNode query,
-            final Collection<String> input,
+            final PlanQuery query,
+            final Map<String, Collection<String>> input,
             final Collection<String> markers,
             final String rootType,
-            final HGQLSchema schema) {
+            final HGQLSchema schema,
+            final ExecutionScope scope) {
 
         final Model model;
         final Map<String, Collection<String>> resultSet;
         final var graphQlQuery = HGraphQLConverter.convertToHGraphQL(schema, query, input, rootType);
-        model = getModelFromRemote(graphQlQuery);
+        model = getModelFromRemote(graphQlQuery, scope);
 
         resultSet = getResultSet(model, query, input, markers, schema);
 
@@ -43,40 +75,172 @@ public final class HGraphQLService extends Service {
         return treeExecutionResult;
     }
 
-    Model getModelFromRemote(final String graphQlQuery) {
-
-        final var mapper = new ObjectMapper();
-
-        final var bodyParam = mapper.createObjectNode();
+    Model getModelFromRemote(final String graphQlQuery, final ExecutionScope scope) {
 
+        final var bodyParam = MAPPER.createObjectNode();
         bodyParam.put("query", graphQlQuery);
 
-        final var model = ModelFactory.createDefaultModel();
-
         log.debug("\n" + url);
         log.debug("\n" + graphQlQuery);
 
-        try {
+        for (int current = format.get(); current < FORMATS.size(); current++) {
+            final var model = getModelFromRemote(bodyParam.toString(), FORMATS.get(current), scope);
+            if (model != null) {
+                return model;
+            }
+            // an older peer, which does not know the format and answered with JSON instead
+            if (format.compareAndSet(current, current + 1)) {
+                log.info("Remote service at {} does not serve {}, falling back to {}", url, FORMATS.get(current).mediaType,
+                        FORMATS.get(current + 1).mediaType);
+            }
+        }
+        return ModelFactory.createDefaultModel();
+    }
 
-            final HttpResponse<InputStream> response = Unirest.post(url)
-                    .header("Accept", "application/rdf+xml")
-                    .body(bodyParam.toString())
-                    .asBinary();
+    /**
+     * @return the data, empty if it could not be fetched, or null if the remote service answered in another format
+     */
+    private Model getModelFromRemote(final String body, final Format requested, final ExecutionScope scope) {
+
+        final var builder = HttpRequest.newBuilder(URI.create(url))
+                .header("Accept", requested.mediaType)
+                .header("Content-Type", JSON_MEDIA_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (http.getReadTimeout() > 0) {
+            builder.timeout(Duration.ofMillis(http.getReadTimeout()));
+        }
+        final var request = builder.build();
+        final var started = System.nanoTime();
+        final CompletableFuture<HttpResponse<InputStream>> futureResponse = client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        final var unregister = scope.onCancel(() -> futureResponse.cancel(true));
 
-            model.read(response.getBody(), "RDF/XML");
+        try {
 
-        } catch (UnirestException e) {
-            e.printStackTrace();
+            final var response = futureResponse.get(remainingMillis(started, scope), TimeUnit.MILLISECONDS);
+            return read(response, requested, started, scope);
+
+        } catch (ExecutionException | IOException e) {
+            log.error("Problem querying remote service at {}", url, e);
+        } catch (TimeoutException | CancellationException e) {
+            futureResponse.cancel(true);
+            log.warn("Query to remote service at {} timed out or was cancelled at the request deadline", url);
+        } catch (InterruptedException e) {
+            futureResponse.cancel(true);
+            Thread.currentThread().interrupt();
+        } finally {
+            unregister.run();
         }
 
+        return ModelFactory.createDefaultModel();
+    }
+
+    /**
+     * @return the data of the response, empty if it failed, or null if it is not in the requested format
+     */
+    private Model read(final HttpResponse<InputStream> response,
+                       final Format requested,
+                       final long started,
+                       final ExecutionScope scope) throws IOException {
+
+        final var model = ModelFactory.createDefaultModel();
+        try (var in = response.body()) {
+            if (response.statusCode() >= HttpURLConnection.HTTP_MULT_CHOICE) {
+                log.error("Remote service at {} answered with status {}", url, response.statusCode());
+                return model;
+            }
+            final var contentType = response.headers().firstValue("Content-Type").orElse("");
+            if (contentType.startsWith(JSON_MEDIA_TYPE) && requested.lang != Lang.RDFXML) {
+                return null;
+            }
+            // parsed as it arrives; closing the stream stops the parser at the deadline
+            final var unregister = scope.onCancel(() -> close(in));
+            // cancelling it once the body is read also unschedules its timer
+            final var totalTimeout = new CompletableFuture<Void>();
+            if (http.getTotalTimeout() > 0) {
+                totalTimeout.completeOnTimeout(null, remainingMillis(started, scope), TimeUnit.MILLISECONDS).thenRun(() -> close(in));
+            }
+            try {
+                RDFDataMgr.read(model, in, requested.lang);
+            } finally {
+                totalTimeout.cancel(false);
+                unregister.run();
+            }
+        }
         return model;
     }
 
+    /**
+     * Milliseconds left for a request started at the given time, before its total timeout or the deadline of the scope.
+     */
+    private long remainingMillis(final long started, final ExecutionScope scope) {
+
+        final var total = http.getTotalTimeout();
+        if (total <= 0) {
+            return scope.remainingMillis();
+        }
+        final var elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        return Math.min(scope.remainingMillis(), Math.max(0, total - elapsed));
+    }
+
+    private void close(final InputStream in) {
+
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("Problem closing the response of remote service at {}", url, e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+
+        final Map<String, Object> stats = new LinkedHashMap<>(super.getStats());
+        stats.put("format", FORMATS.get(format.get()).mediaType);
+        return stats;
+    }
+
     @Override
     public void setParameters(ServiceConfig serviceConfig) {
 
         setId(serviceConfig.getId());
         this.url = serviceConfig.getUrl();
+        this.http = serviceConfig.getHttp();
+        // one client, and so one connection pool, per service
+        this.clientExecutor = Executors.newCachedThreadPool(runnable -> {
+            // daemons, as the client's own default threads are
+            final var thread = new Thread(runnable, "hgql-http-" + getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final var builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .executor(clientExecutor);
+        if (http.getConnectTimeout() > 0) {
+            builder.connectTimeout(Duration.ofMillis(http.getConnectTimeout()));
+        }
+        this.client = builder.build();
     }
-}
 
+    /**
+     * Stops the threads of the client; its connections are closed once it is no longer referenced.
+     */
+    @Override
+    public void close() {
+
+        if (clientExecutor != null) {
+            clientExecutor.shutdownNow();
+        }
+        client = null;
+    }
+
+    private static final class Format {
+
+        private final String mediaType;
+        private final Lang lang;
+
+        private Format(final String mediaType, final Lang lang) {
+            this.mediaType = mediaType;
+            this.lang = lang;
+        }
+    }
+}
@@ -1,22 +1,24 @@
 package org.hypergraphql.datafetching.services;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.jena.query.ARQ;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.riot.RDFDataMgr;
 import org.hypergraphql.config.system.ServiceConfig;
+import org.hypergraphql.datafetching.ExecutionScope;
 import org.hypergraphql.datafetching.LocalSPARQLExecution;
 import org.hypergraphql.datafetching.SPARQLEndpointExecution;
 import org.hypergraphql.datamodel.HGQLSchema;
 import org.hypergraphql.exception.HGQLConfigurationException;
+import org.hypergraphql.query.plan.PlanQuery;
 import org.hypergraphql.util.LangUtils;
 
 @Slf4j
@@ -53,12 +55,13 @@ public final class LocalModelSPARQLService extends SPARQLEndpointService {
 
     @Override
     protected SPARQLEndpointExecution buildExecutor(
-            final JsonNode query,
-            final Collection<String> inputSubset,
+            final PlanQuery query,
+            final Map<String, Collection<String>> inputSubset,
             final Collection<String> markers,
             final HGQLSchema schema,
-            final String rootType
+            final String rootType,
+            final ExecutionScope scope
     ) {
-        return new LocalSPARQLExecution(query, inputSubset, markers, this, schema, getModel(), rootType);
+        return new LocalSPARQLExecution(query, inputSubset, markers, this, schema, getModel(), rootType, scope);
     }
 }
@@ -1,69 +1,109 @@
 package org.hypergraphql.datafetching.services;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.resultset.ResultSetLang;
 import org.hypergraphql.config.schema.HGQLVocabulary;
+import org.hypergraphql.config.system.HttpConfig;
 import org.hypergraphql.config.system.ServiceConfig;
+import org.hypergraphql.datafetching.ExecutionScope;
 import org.hypergraphql.datafetching.SPARQLEndpointExecution;
 import org.hypergraphql.datafetching.SPARQLExecutionResult;
+import org.hypergraphql.datafetching.SPARQLResultCache;
 import org.hypergraphql.datafetching.TreeExecutionResult;
 import org.hypergraphql.datamodel.HGQLSchema;
+import org.hypergraphql.query.plan.PlanQuery;
 
-import static org.hypergraphql.util.HGQLConstants.ARGS;
-import static org.hypergraphql.util.HGQLConstants.NAME;
-import static org.hypergraphql.util.HGQLConstants.URIS;
-
+@Slf4j
 @Getter
 public class SPARQLEndpointService extends SPARQLService {
 
-    public static final int VALUES_SIZE_LIMIT = 100;
+    // fastest to parse first; Thrift and TSV are read solution by solution, SPARQL JSON is served by every endpoint
+    private static final List<Lang> SELECT_FORMATS = List.of(
+            ResultSetLang.SPARQLResultSetThrift,
+            ResultSetLang.SPARQLResultSetTSV,
+            ResultSetLang.SPARQLResultSetJSON
+    );
+    private static final int FIRST_FALLBACK_Q = 9; // tenths
+    private static final List<String> SELECT_ACCEPT = selectAccept();
+
     private String url;
     private String user;
     private String password;
+    private AdaptiveBatchSize batchSize;
+    private int maxConcurrentChunks;
+    @Getter(AccessLevel.NONE)
+    private Semaphore chunkPermits;
+    @Getter(AccessLevel.NONE)
+    private final Queue<Runnable> waitingChunks = new ConcurrentLinkedQueue<>(); // chunks with no permit yet
+    @Getter(AccessLevel.NONE)
+    private final ChunkStats chunkStats = new ChunkStats();
+    private CloseableHttpClient httpClient; // null for services without an endpoint
+    @Getter(AccessLevel.NONE)
+    private PoolingHttpClientConnectionManager connections;
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger selectFormat = new AtomicInteger(0); // index of the result format asked for first
+    private SPARQLResultCache resultCache; // null unless caching is configured
 
     @Override
     public TreeExecutionResult executeQuery(
-            final JsonNode query,
-            final Collection<String> input,
+            final PlanQuery query,
+            final Map<String, Collection<String>> input,
             final Collection<String> markers,
             final String rootType,
-            final HGQLSchema schema
+            final HGQLSchema schema,
+            final ExecutionScope scope
     ) {
 
         final Map<String, Collection<String>> resultSet = new HashMap<>();
         final var unionModel = ModelFactory.createDefaultModel();
-        final Collection<Future<SPARQLExecutionResult>> futureSPARQLresults = new HashSet<>();
-
-        final List<String> inputList = getStrings(query, input, markers, rootType, schema, resultSet);
+        final Queue<Map.Entry<String, String>> inputQueue =
+                new ArrayDeque<>(getStrings(query, input, markers, rootType, schema, resultSet));
 
+        // scatter: every chunk is queued up front; the permits bound how many reach the endpoint at once
+        final List<Future<SPARQLExecutionResult>> futureSPARQLresults = new ArrayList<>();
         do {
+            final var inputSubset = batchSize.nextChunk(inputQueue);
+            final var execution = buildExecutor(query, inputSubset, markers, schema, rootType, scope);
+            futureSPARQLresults.add(schedule(execution, inputSubset, scope));
+        } while (!inputQueue.isEmpty());
+        chunkStats.scattered(futureSPARQLresults.size());
+        log.debug("Query to {} sent in {} chunk(s)", getId(), futureSPARQLresults.size());
 
-            final Collection<String> inputSubset = new HashSet<>();
-            int i = 0;
-            while (i < VALUES_SIZE_LIMIT && !inputList.isEmpty()) {
-                inputSubset.add(inputList.get(0));
-                inputList.remove(0);
-                i++;
-            }
-            final var executor = Executors.newFixedThreadPool(50);
-            final var execution = buildExecutor(query, inputSubset, markers, schema, rootType);
-            futureSPARQLresults.add(executor.submit(execution));
-
-        } while (inputList.size() > VALUES_SIZE_LIMIT);
-
-        iterateFutureResults(futureSPARQLresults, unionModel, resultSet);
+        // gather
+        iterateFutureResults(futureSPARQLresults, unionModel, resultSet, scope);
 
         final var treeExecutionResult = new TreeExecutionResult();
         treeExecutionResult.setResultSet(resultSet);
@@ -72,42 +112,127 @@ public class SPARQLEndpointService extends SPARQLService {
         return treeExecutionResult;
     }
 
+    /**
+     * Queues a chunk until the endpoint has capacity for it, and then forks it. No thread waits for the capacity:
+     * the permit of each chunk that completes goes to the next one queued. A chunk still queued when the request's
+     * deadline passes is cancelled with it, and the request is answered with whatever data has been fetched.
+     */
+    private Future<SPARQLExecutionResult> schedule(final SPARQLEndpointExecution execution,
+                                                   final Map<String, Collection<String>> inputSubset,
+                                                   final ExecutionScope scope) {
+
+        final var result = new CompletableFuture<SPARQLExecutionResult>();
+        final var unregister = scope.onCancel(() -> result.cancel(false));
+        result.whenComplete((value, error) -> unregister.run());
+        waitingChunks.add(() -> {
+            if (result.isDone()) {
+                chunkPermits.release();
+                return;
+            }
+            // the permit is held until the chunk has completed, or the request has gone
+            result.whenComplete((value, error) -> {
+                chunkPermits.release();
+                dispatch();
+            });
+            try {
+                scope.supplyAsync(() -> timed(execution, inputSubset)).whenComplete((value, error) -> {
+                    if (error == null) {
+                        result.complete(value);
+                    } else {
+                        result.completeExceptionally(error);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.cancel(false);
+            }
+        });
+        dispatch();
+        return result;
+    }
+
+    /**
+     * Forks queued chunks for as long as there are permits for them. Called whenever a chunk is queued or a permit
+     * is released, so none is left queued while the endpoint has capacity.
+     */
+    private void dispatch() {
+
+        while (!waitingChunks.isEmpty() && chunkPermits.tryAcquire()) {
+            final var next = waitingChunks.poll();
+            if (next == null) {
+                chunkPermits.release();
+            } else {
+                next.run();
+            }
+        }
+    }
+
+    /**
+     * Runs a chunk, and reports its latency and outcome (which adjusts the size of the following chunks).
+     */
+    private SPARQLExecutionResult timed(final SPARQLEndpointExecution execution,
+                                        final Map<String, Collection<String>> inputSubset) {
+
+        final int chunkSize = inputSubset.values().stream().mapToInt(Collection::size).sum();
+        final long start = System.nanoTime();
+        var success = false;
+        try {
+            final var result = execution.call();
+            success = true;
+            return result;
+        } finally {
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            batchSize.record(chunkSize, millis, success);
+            chunkStats.completed(millis);
+        }
+    }
+
     void iterateFutureResults(
             final Collection<Future<SPARQLExecutionResult>> futureSPARQLResults,
             final Model unionModel,
-            final Map<String, Collection<String>> resultSet
+            final Map<String, Collection<String>> resultSet,
+            final ExecutionScope scope
     ) {
 
         for (Future<SPARQLExecutionResult> futureExecutionResult : futureSPARQLResults) {
             try {
-                final var result = futureExecutionResult.get();
+                final var result = scope.join(futureExecutionResult);
                 unionModel.add(result.getModel());
-                resultSet.putAll(result.getResultSet());
-            } catch (InterruptedException
-                    | ExecutionException e) {
-                e.printStackTrace();
+                result.getResultSet().forEach((marker, values) ->
+                        resultSet.computeIfAbsent(marker, key -> new HashSet<>()).addAll(values));
+            } catch (ExecutionException e) {
+                log.error("Chunk of a query to {} failed; its data is missing from the result", getId(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (CancellationException e) {
+                // the request's deadline has passed; keep what has been fetched so far
+                break;
             }
         }
     }
 
-    List<String> getStrings(final JsonNode query,
-                            final Collection<String> input,
-                            final Collection<String> markers,
-                            final String rootType,
-                            final HGQLSchema schema,
-                            final Map<String, Collection<String>> resultSet) {
+    /**
+     * Flattens the input of a query to (marker, URI) pairs, so that it can be sent in chunks. The URIs of
+     * a _GET_BY_ID query field are its input.
+     */
+    List<Map.Entry<String, String>> getStrings(final PlanQuery query,
+                                               final Map<String, Collection<String>> input,
+                                               final Collection<String> markers,
+                                               final String rootType,
+                                               final HGQLSchema schema,
+                                               final Map<String, Collection<String>> resultSet) {
         for (final String marker : markers) {
             resultSet.put(marker, new HashSet<>());
         }
 
-        if ("Query".equals(rootType) && schema.getQueryFields().get(query.get(NAME).asText()).type().equals(HGQLVocabulary.HGQL_QUERY_GET_BY_ID_FIELD)) {
-            final Iterator<JsonNode> uris = query.get(ARGS).get(URIS).elements();
-            while (uris.hasNext()) {
-                String uri = uris.next().asText();
-                input.add(uri);
-            }
+        final List<Map.Entry<String, String>> markedUris = new ArrayList<>();
+        input.forEach((marker, uris) -> uris.forEach(uri -> markedUris.add(Map.entry(marker, uri))));
+
+        if (query.isRoot() && query.getRootField().getQueryField().type().equals(HGQLVocabulary.HGQL_QUERY_GET_BY_ID_FIELD)) {
+            final var rootField = query.getRootField();
+            rootField.getArguments().getUris().forEach(uri -> markedUris.add(Map.entry(rootField.getNodeId(), uri)));
         }
-        return new ArrayList<>(input);
+        return markedUris;
     }
 
     @Override
@@ -120,16 +245,143 @@ public class SPARQLEndpointService extends SPARQLService {
         this.user = serviceConfig.getUser();
         setGraph(serviceConfig.getGraph());
         this.password = serviceConfig.getPassword();
+        this.batchSize = new AdaptiveBatchSize(serviceConfig.getBatching());
+        this.maxConcurrentChunks = serviceConfig.getBatching().getMaxConcurrentChunks();
+        this.chunkPermits = new Semaphore(maxConcurrentChunks);
+        this.resultCache = serviceConfig.getCache().isEnabled() ? new SPARQLResultCache(serviceConfig.getCache()) : null;
+        if (url != null) {
+            buildHttpClient(serviceConfig.getHttp());
+        }
+    }
 
+    /**
+     * One pooled client per service, so that connections to the endpoint are reused and no two services share
+     * (or race on) HTTP state.
+     */
+    private void buildHttpClient(final HttpConfig http) {
+
+        this.connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(http.getMaxConnections());
+        connections.setDefaultMaxPerRoute(http.getMaxConnectionsPerRoute());
+
+        final var requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) http.getConnectTimeout())
+                .setConnectionRequestTimeout((int) http.getConnectTimeout())
+                .setSocketTimeout((int) http.getReadTimeout())
+                .build();
+        final var builder = HttpClients.custom()
+                .setConnectionManager(connections)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    final var requested = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return requested < 0 ? http.getKeepAlive() : Math.min(requested, http.getKeepAlive());
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(http.getKeepAlive(), TimeUnit.MILLISECONDS);
+        if (StringUtils.isNotEmpty(user)) {
+            final var credentials = new BasicCredentialsProvider();
+            credentials.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, password));
+            builder.setDefaultCredentialsProvider(credentials);
+        }
+        this.httpClient = builder.build();
+    }
+
+    @Override
+    public void close() {
+
+        if (httpClient == null) {
+            return;
+        }
+        try {
+            // shuts the connection pool (and its eviction thread) down too
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("Problem closing the HTTP client of {}", getId(), e);
+        }
+    }
+
+    /**
+     * @return the index of the SELECT result format the endpoint is currently asked for
+     */
+    public int getSelectFormat() {
+        return selectFormat.get();
+    }
+
+    /**
+     * @return the content type of the given format
+     */
+    public String getSelectContentType(final int format) {
+        return SELECT_FORMATS.get(format).getHeaderString();
+    }
+
+    /**
+     * @return the Accept header of a SELECT query asking for the given format, then for the formats it falls back to
+     */
+    public String getSelectAccept(final int format) {
+        return SELECT_ACCEPT.get(format);
+    }
+
+    /**
+     * Stops asking the endpoint for the given format, which it failed to serve.
+     *
+     * @return whether there is another format to try
+     */
+    public boolean downgradeSelectFormat(final int format) {
+
+        if (format + 1 >= SELECT_FORMATS.size()) {
+            return false;
+        }
+        if (selectFormat.compareAndSet(format, format + 1)) {
+            log.info("Endpoint of {} does not serve {}, falling back to {}", getId(),
+                    SELECT_FORMATS.get(format).getHeaderString(), SELECT_FORMATS.get(format + 1).getHeaderString());
+        }
+        return true;
+    }
+
+    private static List<String> selectAccept() {
+
+        final List<String> accept = new ArrayList<>();
+        for (int format = 0; format < SELECT_FORMATS.size(); format++) {
+            final var header = new StringBuilder(SELECT_FORMATS.get(format).getHeaderString());
+            // q=0.9, 0.8, ... for the fallbacks, in order
+            for (int fallback = format + 1; fallback < SELECT_FORMATS.size(); fallback++) {
+                header.append(", ").append(SELECT_FORMATS.get(fallback).getHeaderString())
+                        .append(";q=0.").append(FIRST_FALLBACK_Q - (fallback - format - 1));
+            }
+            accept.add(header.toString());
+        }
+        return List.copyOf(accept);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        final Map<String, Object> stats = new LinkedHashMap<>(super.getStats());
+        stats.put("batching", batchSize.getStats());
+        stats.put("chunks", chunkStats.getStats());
+        stats.put("runningChunks", maxConcurrentChunks - chunkPermits.availablePermits());
+        if (resultCache != null) {
+            stats.put("cache", resultCache.getStats());
+        }
+        if (connections != null) {
+            final var pool = connections.getTotalStats();
+            stats.put("connections", Map.of(
+                    "leased", pool.getLeased(),
+                    "idle", pool.getAvailable(),
+                    "pending", pool.getPending(),
+                    "max", pool.getMax()));
+            stats.put("selectFormat", SELECT_FORMATS.get(selectFormat.get()).getHeaderString());
+        }
+        return stats;
     }
 
     @Override
     protected SPARQLEndpointExecution buildExecutor(
-            final JsonNode query,
-            final Collection<String> inputSubset,
+            final PlanQuery query,
+            final Map<String, Collection<String>> inputSubset,
             final Collection<String> markers,
             final HGQLSchema schema,
-            final String rootType) {
-        return new SPARQLEndpointExecution(query, inputSubset, markers, this, schema, rootType);
+            final String rootType,
+            final ExecutionScope scope) {
+        return new SPARQLEndpointExecution(query, inputSubset, markers, this, schema, rootType, scope);
     }
 }
@@ -1,10 +1,12 @@
 package org.hypergraphql.datafetching.services;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import java.util.Collection;
+import java.util.Map;
 import org.hypergraphql.config.system.ServiceConfig;
+import org.hypergraphql.datafetching.ExecutionScope;
 import org.hypergraphql.datafetching.SPARQLEndpointExecution;
 import org.hypergraphql.datamodel.HGQLSchema;
+import org.hypergraphql.query.plan.PlanQuery;
 
 public abstract class SPARQLService extends Service {
 
@@ -29,10 +31,11 @@ public abstract class SPARQLService extends Service {
     }
 
     protected abstract SPARQLEndpointExecution buildExecutor(
-            JsonNode query,
-            Collection<String> inputSubset,
+            PlanQuery query,
+            Map<String, Collection<String>> inputSubset,
             Collection<String> markers,
             HGQLSchema schema,
-            String rootType
+            String rootType,
+            ExecutionScope scope
     );
 }
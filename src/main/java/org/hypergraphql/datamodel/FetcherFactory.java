@@ -6,10 +6,13 @@ import graphql.schema.GraphQLTypeUtil;
 import java.util.List;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
+import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
 import org.hypergraphql.config.schema.HGQLVocabulary;
 import org.hypergraphql.config.schema.TypeConfig;
-import org.hypergraphql.config.system.FetchParams;
+
+import static org.hypergraphql.util.HGQLConstants.LANG;
 
 @RequiredArgsConstructor
 public class FetcherFactory {
@@ -48,25 +51,29 @@ public class FetcherFactory {
         };
     }
 
-    public DataFetcher<List<RDFNode>> objectsFetcher() {
+    /**
+     * Resolves an object field; the predicate and the target type (null for none) are fixed when the schema is wired.
+     */
+    public DataFetcher<List<RDFNode>> objectsFetcher(final Property predicate, final Resource targetType) {
+
+        final var predicateNode = predicate.asNode();
+        final var targetNode = targetType == null ? null : targetType.asNode();
         return environment -> {
-            final var params = new FetchParams(environment, schema);
-            return params.getClient().getValuesOfObjectProperty(
-                    params.getSubjectResource(),
-                    params.getPredicateURI(),
-                    params.getTargetURI()
-            );
+            final ModelContainer client = environment.getContext();
+            return client.getValuesOfObjectProperty(environment.getSource(), predicateNode, targetNode);
         };
     }
 
-    public DataFetcher<List<String>> literalValuesFetcher() {
+    /**
+     * Resolves a scalar field; the predicate is fixed when the schema is wired.
+     */
+    public DataFetcher<List<String>> literalValuesFetcher(final Property predicate) {
+
+        final var predicateNode = predicate.asNode();
         return environment -> {
-            final var params = new FetchParams(environment, schema);
-            return params.getClient().getValuesOfDataProperty(
-                    params.getSubjectResource(),
-                    params.getPredicateURI(),
-                    environment.getArguments()
-            );
+            final ModelContainer client = environment.getContext();
+            final Object lang = environment.getArgument(LANG);
+            return client.getValuesOfDataProperty(environment.getSource(), predicateNode, lang == null ? null : lang.toString());
         };
     }
 }
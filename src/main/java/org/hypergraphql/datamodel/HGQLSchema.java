@@ -62,6 +62,7 @@ public class HGQLSchema {
 
     private final String schemaUri;
     private final String schemaNamespace;
+    private final Map<String, Service> services;
 
     private Map<String, TypeConfig> types;
     private Map<String, FieldConfig> fields;
@@ -91,12 +92,17 @@ public class HGQLSchema {
         }
         final Map<String, String> contextMap = generateContextMap(context);
 
+        this.services = Map.copyOf(services);
         populateServices(services);
         populateTypes(registryTypes, contextMap);
         generateConfigs(services);
 
     }
 
+    public Map<String, Service> getServices() {
+        return services;
+    }
+
     public Map<String, TypeConfig> getTypes() {
         return types;
     }
@@ -20,9 +20,11 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.jena.rdf.model.ResourceFactory;
 import org.hypergraphql.config.schema.FieldOfTypeConfig;
 import org.hypergraphql.config.schema.TypeConfig;
 import org.hypergraphql.config.system.ServiceConfig;
+import org.hypergraphql.datafetching.Bulkhead;
 import org.hypergraphql.datafetching.services.Service;
 import org.hypergraphql.exception.HGQLConfigurationException;
 
@@ -104,6 +106,9 @@ public class HGQLSchemaWiring {
                 final var service = (Service) serviceType.getConstructors()[0].newInstance();
 
                 service.setParameters(serviceConfig);
+                if (serviceConfig.getBulkhead().getMaxConcurrent() > 0) {
+                    service.setBulkhead(new Bulkhead(serviceConfig.getId(), serviceConfig.getBulkhead()));
+                }
 
                 services.put(serviceConfig.getId(), service);
             } catch (IllegalAccessException
@@ -198,10 +203,16 @@ public class HGQLSchemaWiring {
 
     private GraphQLFieldDefinition registerGraphQLField(final FieldOfTypeConfig field) {
         final var fetcherFactory = new FetcherFactory(hgqlSchema);
+        // resolved once here rather than on every fetch
+        final var predicate = ResourceFactory.createProperty(hgqlSchema.getFields().get(field.getName()).getId());
         if (SCALAR_TYPES.containsKey(field.getTargetName())) {
-            return getBuiltField(field, fetcherFactory.literalValuesFetcher());
+            return getBuiltField(field, fetcherFactory.literalValuesFetcher(predicate));
         } else {
-            return getBuiltField(field, fetcherFactory.objectsFetcher());
+            final var targetType = hgqlSchema.getTypes().get(field.getTargetName());
+            final var targetResource = targetType == null || targetType.getId() == null
+                    ? null
+                    : ResourceFactory.createResource(targetType.getId());
+            return getBuiltField(field, fetcherFactory.objectsFetcher(predicate, targetResource));
         }
     }
 
@@ -1,47 +1,85 @@
 package org.hypergraphql.datamodel;
 
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import lombok.RequiredArgsConstructor;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.Resource;
-import org.hypergraphql.config.schema.HGQLVocabulary;
+import org.apache.jena.rdf.model.impl.ResourceImpl;
 
 /**
  * Created by szymon on 22/08/2017.
+ *
+ * Reads go through a {@link TripleStore}. A container made from a store (the data of a request) only
+ * creates a Jena model when it is serialized; one made from a model (the RDF schema, which is still being
+ * written) indexes it again on the first read after a write.
  */
-@RequiredArgsConstructor
 public class ModelContainer {
 
-    private final Model model;
+    private volatile Model model;
+    private volatile TripleStore store;
+
+    public ModelContainer(final Model model) {
+        this.model = model;
+    }
+
+    public ModelContainer(final TripleStore store) {
+        this.store = store;
+    }
 
     public String getDataOutput(final String format) {
 
         final var out = new StringWriter();
-        model.write(out, format);
+        getModel().write(out, format);
         return out.toString();
     }
 
-    private Property getPropertyFromUri(final String propertyURI) {
+    public void writeDataOutput(final OutputStream out, final String format) {
+        getModel().write(out, format);
+    }
+
+    private synchronized Model getModel() {
 
-        return this.model.getProperty(propertyURI);
+        if (model == null) {
+            model = store.toModel();
+        }
+        return model;
+    }
+
+    private TripleStore getStore() {
+
+        final var current = store;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (store == null) {
+                store = TripleStore.of(model.getGraph());
+            }
+            return store;
+        }
     }
 
-    private Resource getResourceFromUri(final String resourceURI) {
+    private static Node uri(final String uri) {
+        return NodeFactory.createURI(uri);
+    }
 
-        return this.model.getResource(resourceURI);
+    private static RDFNode resource(final Node node) {
+        return new ResourceImpl(node, null);
     }
 
     List<RDFNode> getSubjectsOfObjectProperty(final String predicateURI, final String objectURI) {
 
-        final var iterator = this.model.listSubjectsWithProperty(getPropertyFromUri(predicateURI), getResourceFromUri(objectURI));
+        final var current = getStore();
         final List<RDFNode> nodeList = new ArrayList<>();
-        iterator.forEachRemaining(nodeList::add);
+        for (final int subject : current.subjects(current.id(uri(predicateURI)), current.id(uri(objectURI)))) {
+            nodeList.add(resource(current.node(subject)));
+        }
         return nodeList;
     }
 
@@ -54,11 +92,11 @@ public class ModelContainer {
                                   final String predicateURI,
                                   final Map<String, Object> args) {
 
-        final var iterator = this.model.listObjectsOfProperty(subject.asResource(), getPropertyFromUri(predicateURI));
-        while (iterator.hasNext()) {
-            final var data = iterator.next();
+        final var current = getStore();
+        for (final int object : current.objects(current.id(subject.asNode()), current.id(uri(predicateURI)))) {
+            final var data = current.node(object);
             if (data.isLiteral()) {
-                return data.asLiteral().getString();
+                return data.getLiteralLexicalForm();
             }
         }
         return null;
@@ -68,23 +106,28 @@ public class ModelContainer {
                                          final String predicateURI,
                                          final Map<String, Object> args) {
 
-        final List<String> valList = new ArrayList<>();
+        return getValuesOfDataProperty(subject, uri(predicateURI), args.containsKey("lang") ? args.get("lang").toString() : null);
+    }
 
-        final var iterator = model.listObjectsOfProperty(subject.asResource(), getPropertyFromUri(predicateURI));
+    /**
+     * @param lang the language tag of the values to return; null for all of them
+     */
+    List<String> getValuesOfDataProperty(final RDFNode subject, final Node predicate, final String lang) {
 
-        while (iterator.hasNext()) {
-            RDFNode data = iterator.next();
-            if (data.isLiteral()) {
-                if (!args.containsKey("lang") || args.get("lang").toString().equalsIgnoreCase(data.asLiteral().getLanguage())) {
-                    valList.add(data.asLiteral().getString());
-                }
+        final var current = getStore();
+        final List<String> valList = new ArrayList<>();
+
+        for (final int object : current.objects(current.id(subject.asNode()), current.id(predicate))) {
+            final var data = current.node(object);
+            if (data.isLiteral() && (lang == null || lang.equalsIgnoreCase(data.getLiteralLanguage()))) {
+                valList.add(data.getLiteralLexicalForm());
             }
         }
         return valList;
     }
 
     List<RDFNode> getValuesOfObjectProperty(final String subjectURI, final String predicateURI) {
-        return getValuesOfObjectProperty(getResourceFromUri(subjectURI), predicateURI);
+        return getValuesOfObjectProperty(resource(uri(subjectURI)), predicateURI);
     }
 
     List<RDFNode> getValuesOfObjectProperty(final RDFNode subject, final String predicateURI) {
@@ -94,17 +137,23 @@ public class ModelContainer {
 
     List<RDFNode> getValuesOfObjectProperty(final RDFNode subject, final String predicateURI, final String targetURI) {
 
-        final var iterator = this.model.listObjectsOfProperty(subject.asResource(), getPropertyFromUri(predicateURI));
+        return getValuesOfObjectProperty(subject, uri(predicateURI), targetURI == null ? null : uri(targetURI));
+    }
+
+    /**
+     * @param targetType the type the values must have; null for any
+     */
+    List<RDFNode> getValuesOfObjectProperty(final RDFNode subject, final Node predicate, final Node targetType) {
+
+        final var current = getStore();
+        final var target = targetType == null ? 0 : current.id(targetType);
         final List<RDFNode> rdfNodes = new ArrayList<>();
-        iterator.forEachRemaining(node -> {
-            if (!node.isLiteral()) {
-                if (targetURI == null) {
-                    rdfNodes.add(node);
-                } else if (this.model.contains(node.asResource(), getPropertyFromUri(HGQLVocabulary.RDF_TYPE), getResourceFromUri(targetURI))) {
-                    rdfNodes.add(node);
-                }
+        for (final int object : current.objects(current.id(subject.asNode()), current.id(predicate))) {
+            final var node = current.node(object);
+            if (!node.isLiteral() && (targetType == null || current.hasType(object, target))) {
+                rdfNodes.add(resource(node));
             }
-        });
+        }
         return rdfNodes;
     }
 
@@ -120,10 +169,16 @@ public class ModelContainer {
     void insertObjectTriple(final String subjectURI,
                             final String predicateURI,
                             final String objectURI) {
-        model.add(getResourceFromUri(subjectURI), getPropertyFromUri(predicateURI), getResourceFromUri(objectURI));
+
+        final var target = getModel();
+        target.add(target.getResource(subjectURI), target.getProperty(predicateURI), target.getResource(objectURI));
+        store = null;
     }
 
     void insertStringLiteralTriple(String subjectURI, String predicateURI, String value) {
-        model.add(getResourceFromUri(subjectURI), getPropertyFromUri(predicateURI), value);
+
+        final var target = getModel();
+        target.add(target.getResource(subjectURI), target.getProperty(predicateURI), value);
+        store = null;
     }
 }
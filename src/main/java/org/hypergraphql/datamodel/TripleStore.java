@@ -0,0 +1,281 @@
+package org.hypergraphql.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ * A read-only, dictionary-encoded set of triples: the data fetched for one request, read by its resolvers.
+ *
+ * Every node is mapped to an int id. The objects of each (subject, predicate) pair are kept in an int
+ * array, in the order they were first added, in an open-addressing table keyed by the pair; the subjects
+ * of each rdf:type are kept in a bitset. Looking objects up allocates nothing. A store is
+ * filled through a {@link Builder} while the request's fetches run, and frozen once they are done; after
+ * that nothing changes, so resolvers read it from any thread without locking. A Jena {@link Model} is only
+ * created from it when the data has to be serialized as RDF.
+ */
+public final class TripleStore {
+
+    private static final int[] NONE = new int[0];
+    private static final int ABSENT = -1;
+    private static final int INT_BITS = 32;
+    private static final long ID_MASK = 0xffffffffL;
+    private static final long EMPTY_KEY = -1L; // never a pair of (non-negative) ids
+    private static final long FIBONACCI_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final List<Node> nodes; // by id
+    private final Map<Node, Integer> ids;
+    private final long[] keys; // (subject, predicate) pairs, open addressing; EMPTY_KEY for a free slot
+    private final int[][] objects; // by slot of the pair in keys
+    private final BitSet[] types; // subjects by type id; null for nodes that are not a type
+    private final int typePredicate;
+    private final int size;
+
+    private TripleStore(final Builder builder) {
+
+        this.nodes = List.copyOf(builder.nodes);
+        this.ids = builder.ids;
+        this.typePredicate = id(RDF.type.asNode());
+        this.types = new BitSet[nodes.size()];
+        builder.types.forEach((type, subjects) -> types[type] = subjects);
+
+        // at most half full
+        final var capacity = Integer.highestOneBit(Math.max(1, builder.objects.size()) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        this.objects = new int[capacity][];
+        final var seen = new BitSet(nodes.size());
+        int triples = 0;
+        for (final Map.Entry<Long, IntList> entry : builder.objects.entrySet()) {
+            final long key = entry.getKey();
+            int slot = slot(key);
+            while (keys[slot] != EMPTY_KEY) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            keys[slot] = key;
+            objects[slot] = entry.getValue().distinct(seen);
+            triples += objects[slot].length;
+        }
+        this.size = triples;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static TripleStore of(final Graph graph) {
+
+        final var builder = builder();
+        builder.add(graph);
+        return builder.freeze();
+    }
+
+    /**
+     * @return the id of the given node, or -1 if the store does not mention it
+     */
+    public int id(final Node node) {
+
+        final var id = ids.get(node);
+        return id == null ? ABSENT : id;
+    }
+
+    public Node node(final int id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * The ids of the objects of the given subject and predicate (ids as returned by {@link #id(Node)}).
+     */
+    public int[] objects(final int subject, final int predicate) {
+
+        if (subject == ABSENT || predicate == ABSENT) {
+            return NONE;
+        }
+        final long key = key(subject, predicate);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY_KEY) {
+            if (keys[slot] == key) {
+                return objects[slot];
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return NONE;
+    }
+
+    public boolean hasType(final int subject, final int type) {
+
+        if (subject == ABSENT || type == ABSENT) {
+            return false;
+        }
+        final var subjects = types[type];
+        return subjects != null && subjects.get(subject);
+    }
+
+    /**
+     * The ids of the subjects of the given predicate and object.
+     */
+    public int[] subjects(final int predicate, final int object) {
+
+        if (predicate == ABSENT || object == ABSENT) {
+            return NONE;
+        }
+        if (predicate == typePredicate) {
+            final var subjects = types[object];
+            return subjects == null ? NONE : subjects.stream().toArray();
+        }
+        // not indexed: only the schema looks subjects up, and only by type
+        final List<Integer> found = new ArrayList<>();
+        for (int slot = 0; slot < keys.length; slot++) {
+            final long key = keys[slot];
+            if (key != EMPTY_KEY && (int) (key & ID_MASK) == predicate && Arrays.stream(objects[slot]).anyMatch(value -> value == object)) {
+                found.add((int) (key >>> INT_BITS));
+            }
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * The number of distinct triples.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A new Jena model holding the same triples.
+     */
+    public Model toModel() {
+
+        final var model = ModelFactory.createDefaultModel();
+        final var graph = model.getGraph();
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == EMPTY_KEY) {
+                continue;
+            }
+            final var subject = nodes.get((int) (keys[slot] >>> INT_BITS));
+            final var predicate = nodes.get((int) (keys[slot] & ID_MASK));
+            for (final int value : objects[slot]) {
+                graph.add(Triple.create(subject, predicate, nodes.get(value)));
+            }
+        }
+        return model;
+    }
+
+    private static long key(final int subject, final int predicate) {
+        return ((long) subject << INT_BITS) | (predicate & ID_MASK);
+    }
+
+    private int slot(final long key) {
+
+        final long mixed = key * FIBONACCI_MULTIPLIER;
+        return (int) (mixed >>> (Long.SIZE - Integer.numberOfTrailingZeros(keys.length))) & (keys.length - 1);
+    }
+
+    /**
+     * Collects the triples of a store. It is safe to add from several threads; once frozen, further triples
+     * are ignored (late results of a request whose deadline has passed).
+     */
+    public static final class Builder {
+
+        private final List<Node> nodes = new ArrayList<>();
+        private final Map<Node, Integer> ids = new HashMap<>();
+        private final Map<Long, IntList> objects = new HashMap<>();
+        private final Map<Integer, BitSet> types = new HashMap<>();
+        private final Node typeNode = RDF.type.asNode();
+        private TripleStore frozen;
+
+        private Builder() {
+        }
+
+        public synchronized void add(final Graph graph) {
+
+            if (frozen == null) {
+                graph.find().forEachRemaining(this::addTriple);
+            }
+        }
+
+        public synchronized void add(final Triple triple) {
+
+            if (frozen == null) {
+                addTriple(triple);
+            }
+        }
+
+        /**
+         * @return the store holding everything added so far; the same store on every call
+         */
+        public synchronized TripleStore freeze() {
+
+            if (frozen == null) {
+                frozen = new TripleStore(this);
+            }
+            return frozen;
+        }
+
+        private void addTriple(final Triple triple) {
+
+            final var subject = intern(triple.getSubject());
+            final var object = intern(triple.getObject());
+            objects.computeIfAbsent(key(subject, intern(triple.getPredicate())), key -> new IntList()).add(object);
+            if (triple.getPredicate().equals(typeNode)) {
+                types.computeIfAbsent(object, type -> new BitSet()).set(subject);
+            }
+        }
+
+        private int intern(final Node node) {
+
+            final var id = ids.get(node);
+            if (id != null) {
+                return id;
+            }
+            final var newId = nodes.size();
+            nodes.add(node);
+            ids.put(node, newId);
+            return newId;
+        }
+    }
+
+    private static final class IntList {
+
+        private static final int INITIAL_CAPACITY = 4;
+
+        private int[] values = new int[INITIAL_CAPACITY];
+        private int length;
+
+        private void add(final int value) {
+
+            if (length == values.length) {
+                values = Arrays.copyOf(values, length * 2);
+            }
+            values[length++] = value;
+        }
+
+        /**
+         * The values without repeats, in order of first occurrence; {@code seen} is left cleared.
+         */
+        private int[] distinct(final BitSet seen) {
+
+            final var result = new int[length];
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                if (!seen.get(values[i])) {
+                    seen.set(values[i]);
+                    result[count++] = values[i];
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                seen.clear(result[i]);
+            }
+            return count == length ? result : Arrays.copyOf(result, count);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.hypergraphql.exception;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A query turned away by the bulkhead of a service that already has as much outstanding work as it may.
+ */
+public class HGQLServiceSaturatedException extends RejectedExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String serviceId;
+
+    public HGQLServiceSaturatedException(final String serviceId, final String message) {
+        super(message);
+        this.serviceId = serviceId;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+}
@@ -1,24 +1,21 @@
 package org.hypergraphql.query.converters;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import org.hypergraphql.config.schema.QueryFieldConfig;
+import java.util.Set;
 import org.hypergraphql.datamodel.HGQLSchema;
+import org.hypergraphql.query.plan.PlanArguments;
+import org.hypergraphql.query.plan.PlanField;
+import org.hypergraphql.query.plan.PlanQuery;
 
 import static org.hypergraphql.config.schema.HGQLVocabulary.HGQL_QUERY_GET_FIELD;
-import static org.hypergraphql.util.HGQLConstants.ARGS;
 import static org.hypergraphql.util.HGQLConstants.EMPTY_STRING;
-import static org.hypergraphql.util.HGQLConstants.FIELDS;
 import static org.hypergraphql.util.HGQLConstants.ID;
 import static org.hypergraphql.util.HGQLConstants.LANG;
-import static org.hypergraphql.util.HGQLConstants.NAME;
 import static org.hypergraphql.util.HGQLConstants.SPACE;
-import static org.hypergraphql.util.HGQLConstants.TARGET_NAME;
 import static org.hypergraphql.util.HGQLConstants.TYPE;
 import static org.hypergraphql.util.HGQLConstants.URIS;
 
@@ -33,25 +30,36 @@ public abstract class HGraphQLConverter {
     private static final String LANG_S = "(" + LANG + ":\"%s\")";
     private static final String QUERY = "{ %s }";
     private static final String BY_ID = "_GET_BY_ID";
+    private static final String ALIAS_SEPARATOR = ": ";
 
     public static String convertToHGraphQL(
             final HGQLSchema schema,
-            final JsonNode jsonQuery,
+            final PlanQuery query,
             final Collection<String> input,
             final String rootType) {
 
-        final Map<String, QueryFieldConfig> queryFields = schema.getQueryFields();
-        final var jsonNodeText = jsonNodeName(jsonQuery);
-        final var root = !jsonQuery.isArray() && queryFields.containsKey(jsonNodeText);
+        final Map<String, Collection<String>> markedInput = query.isRoot() ? Map.of() : Map.of(query.getParentId(), input);
+        return convertToHGraphQL(schema, query, markedInput, rootType);
+    }
 
-        if (root) {
-            if (queryFields.get(jsonNodeText).type().equals(HGQL_QUERY_GET_FIELD)) {
-                return getSelectRoot_GET(schema, jsonQuery);
+    /**
+     * @param input the URIs to query for, keyed by the marker of each branch of the query
+     */
+    public static String convertToHGraphQL(
+            final HGQLSchema schema,
+            final PlanQuery query,
+            final Map<String, Collection<String>> input,
+            final String rootType) {
+
+        if (query.isRoot()) {
+            final var queryField = query.getRootField();
+            if (queryField.getQueryField().type().equals(HGQL_QUERY_GET_FIELD)) {
+                return getSelectRoot_GET(schema, queryField);
             } else {
-                return getSelectRoot_GET_BY_ID(schema, jsonQuery);
+                return getSelectRoot_GET_BY_ID(schema, queryField);
             }
         } else {
-            return getSelectNonRoot(schema, (ArrayNode) jsonQuery, input, rootType);
+            return getSelectNonRoot(schema, query, input, rootType);
         }
     }
 
@@ -65,29 +73,18 @@ public abstract class HGraphQLConverter {
         return String.format(URIS_S, uriSequence);
     }
 
-    private static String getArgsString(final JsonNode getArgs) {
-
-        if (getArgs != null) {
-            return EMPTY_STRING;
-        }
-
-        var argsStr = EMPTY_STRING;
+    private static String getArgsString(final PlanArguments getArgs) {
 
-//        if (getArgs.has(LIMIT)) {
-//            argsStr += String.format(LIMIT_S, getArgs.get(LIMIT).asInt());
-//        }
-//        if (getArgs.has(OFFSET) {
-//            argsStr += String.format(OFFSET_S, getArgs.get(OFFSET).asInt());
-//        }
-        return String.format(ARG, argsStr);
+        // TODO - limit and offset are not forwarded to the remote instance yet
+        return EMPTY_STRING;
     }
 
-    private static String langString(final ObjectNode langArg) {
+    private static String langString(final PlanArguments args) {
 
-        if (langArg.isNull()) {
+        if (!args.hasLang()) {
             return EMPTY_STRING;
         }
-        return String.format(LANG_S, langArg.get(LANG).asText());
+        return String.format(LANG_S, args.getLang());
     }
 
     private static String queryString(final String content) {
@@ -95,64 +92,63 @@ public abstract class HGraphQLConverter {
         return String.format(QUERY, content);
     }
 
-    private static String getSelectRoot_GET_BY_ID(final HGQLSchema schema, final JsonNode jsonQuery) {
+    private static String getSelectRoot_GET_BY_ID(final HGQLSchema schema, final PlanField queryField) {
 
-        final Collection<String> uris = new HashSet<>();
-        final var urisArray = (ArrayNode) jsonQuery.get(ARGS).get(URIS);
-        urisArray.elements().forEachRemaining(el -> uris.add(el.asText()));
-        final var key = jsonNodeName(jsonQuery) + urisString(uris);
-        final var content = getSubQuery(schema, jsonQuery.get(FIELDS), jsonNodeTarget(jsonQuery));
+        final Collection<String> uris = new HashSet<>(queryField.getArguments().getUris());
+        final var key = queryField.getName() + urisString(uris);
+        final var content = getSubQuery(schema, queryField.getFields(), queryField.getTargetName());
         return queryString(key + content);
     }
 
-    private static String getSelectRoot_GET(final HGQLSchema schema, final JsonNode jsonQuery) {
+    private static String getSelectRoot_GET(final HGQLSchema schema, final PlanField queryField) {
 
-        final var key = jsonNodeName(jsonQuery) + getArgsString(jsonQuery.get(ARGS));
-        final var content = getSubQuery(schema, jsonQuery.get(FIELDS), jsonNodeTarget(jsonQuery));
+        final var key = queryField.getName() + getArgsString(queryField.getArguments());
+        final var content = getSubQuery(schema, queryField.getFields(), queryField.getTargetName());
         return queryString(key + content);
     }
 
     private static String getSelectNonRoot(
             final HGQLSchema schema,
-            final ArrayNode jsonQuery,
-            final Collection<String> input,
+            final PlanQuery query,
+            final Map<String, Collection<String>> input,
             final String rootType) {
 
-        final var topQueryFieldName = rootType + BY_ID;
-        final var key = topQueryFieldName + urisString(input);
-        final var content = getSubQuery(schema, jsonQuery, rootType);
-        return queryString(key + content);
+        if (!query.isMerged()) {
+            final var topQueryFieldName = rootType + BY_ID;
+            final var key = topQueryFieldName + urisString(input.getOrDefault(query.getParentId(), Set.of()));
+            final var content = getSubQuery(schema, query.getFields(), rootType);
+            return queryString(key + content);
+        }
+
+        // a merged query asks for each branch under its own alias (its marker)
+        final Collection<String> branchQueries = new ArrayList<>();
+        for (final PlanQuery branch : query.getBranches()) {
+            final var branchInput = input.get(branch.getParentId());
+            if (branchInput != null && !branchInput.isEmpty()) {
+                final var key = branch.getParentId() + ALIAS_SEPARATOR + branch.getRootType() + BY_ID + urisString(branchInput);
+                branchQueries.add(key + getSubQuery(schema, branch.getFields(), branch.getRootType()));
+            }
+        }
+        return queryString(String.join(SPACE, branchQueries));
     }
 
     private static String getSubQuery(
             final HGQLSchema schema,
-            final JsonNode fieldsJson,
+            final List<PlanField> fields,
             final String parentType) {
 
         final Collection<String> subQueryStrings = new HashSet<>();
 
-        if (schema.getTypes().containsKey(parentType)) {
+        if (parentType != null && schema.getTypes().containsKey(parentType)) {
             subQueryStrings.add(ID);
             subQueryStrings.add(TYPE);
         }
 
-        if (fieldsJson == null || fieldsJson.isNull()) {
-            if (subQueryStrings.isEmpty()) {
-                return EMPTY_STRING;
-            } else {
-                return queryString(String.join(SPACE, subQueryStrings));
-            }
-        } else {
-
-            final Iterator<JsonNode> fields = fieldsJson.elements();
-
-            fields.forEachRemaining(field -> {
-                final var fieldsArray = (field.get(FIELDS).isNull()) ? null : (ArrayNode) field.get(FIELDS);
-                final var arg = (field.get(ARGS).isNull()) ? EMPTY_STRING : langString((ObjectNode) field.get(ARGS));
-                final var fieldString = jsonNodeName(field) + arg + SPACE + getSubQuery(schema, fieldsArray, jsonNodeTarget(field));
-                subQueryStrings.add(fieldString);
-            });
-        }
+        fields.forEach(field -> {
+            final var fieldString = field.getName() + langString(field.getArguments()) + SPACE
+                    + getSubQuery(schema, field.getFields(), field.getTargetName());
+            subQueryStrings.add(fieldString);
+        });
 
         if (!subQueryStrings.isEmpty()) {
             return queryString(String.join(SPACE, subQueryStrings));
@@ -160,19 +156,4 @@ public abstract class HGraphQLConverter {
             return EMPTY_STRING;
         }
     }
-
-    private static String jsonNodeName(final JsonNode jsonNode) {
-        return jsonNodeText(jsonNode, NAME);
-    }
-
-    private static String jsonNodeTarget(final JsonNode jsonNode) {
-        return jsonNodeText(jsonNode, TARGET_NAME);
-    }
-
-    private static String jsonNodeText(final JsonNode jsonNode, final String fieldName) {
-        if (jsonNode.has(fieldName)) {
-            return jsonNode.get(fieldName).asText();
-        }
-        return ""; // TODO - this seems unsatisfactory
-    }
 }
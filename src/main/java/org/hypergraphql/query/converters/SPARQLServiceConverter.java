@@ -1,28 +1,19 @@
 package org.hypergraphql.query.converters;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.hypergraphql.config.schema.HGQLVocabulary;
-import org.hypergraphql.config.schema.QueryFieldConfig;
 import org.hypergraphql.datafetching.services.SPARQLEndpointService;
 import org.hypergraphql.datamodel.HGQLSchema;
-
-import static org.hypergraphql.util.HGQLConstants.ARGS;
-import static org.hypergraphql.util.HGQLConstants.FIELDS;
-import static org.hypergraphql.util.HGQLConstants.LANG;
-import static org.hypergraphql.util.HGQLConstants.LIMIT;
-import static org.hypergraphql.util.HGQLConstants.NAME;
-import static org.hypergraphql.util.HGQLConstants.NODE_ID;
-import static org.hypergraphql.util.HGQLConstants.OFFSET;
-import static org.hypergraphql.util.HGQLConstants.PARENT_ID;
-import static org.hypergraphql.util.HGQLConstants.TARGET_NAME;
-import static org.hypergraphql.util.HGQLConstants.URIS;
+import org.hypergraphql.query.plan.PlanArguments;
+import org.hypergraphql.query.plan.PlanField;
+import org.hypergraphql.query.plan.PlanQuery;
 
 @RequiredArgsConstructor
 public class SPARQLServiceConverter {
@@ -74,18 +65,9 @@ public class SPARQLServiceConverter {
         return "FILTER ( " + var + " IN ( " + urisConcat + " ) )";
     }
 
-    private String limitOffsetClause(final JsonNode jsonQuery) {
-        final JsonNode args = jsonQuery.get(ARGS);
-        String limit = "";
-        String offset = "";
-        if (args != null) {
-            if (args.has(LIMIT)) {
-                limit = limitClause(args.get(LIMIT).asInt());
-            }
-            if (args.has(OFFSET)) {
-                offset = offsetClause(args.get(OFFSET).asInt());
-            }
-        }
+    private String limitOffsetClause(final PlanArguments args) {
+        final String limit = (args.getLimit() == null) ? "" : limitClause(args.getLimit());
+        final String offset = (args.getOffset() == null) ? "" : offsetClause(args.getOffset());
         return limit + offset;
     }
 
@@ -111,11 +93,11 @@ public class SPARQLServiceConverter {
         return subject + " " + predicate + " " + object + " .";
     }
 
-    private String langFilterClause(final JsonNode field) {
+    private String langFilterClause(final PlanField field) {
         final String pattern = "FILTER (lang(%s) = \"%s\") . ";
-        final String nodeVar = toVar(field.get(NODE_ID).asText());
-        final JsonNode args = field.get(ARGS);
-        return (args.has(LANG)) ? String.format(pattern, nodeVar, args.get(LANG).asText()) : "";
+        final String nodeVar = toVar(field.getNodeId());
+        final PlanArguments args = field.getArguments();
+        return (args.hasLang()) ? String.format(pattern, nodeVar, args.getLang()) : "";
     }
 
     private String fieldPattern(final String parentId,
@@ -127,111 +109,108 @@ public class SPARQLServiceConverter {
         return predicateTriple + typeTriple;
     }
 
-    public String getSelectQuery(final JsonNode jsonQuery,
-                                 final Collection<String> input,
+    public String getSelectQuery(final PlanQuery query,
+                                 final Map<String, Collection<String>> input,
                                  final String rootType) {
 
-        final Map<String, QueryFieldConfig> queryFields = schema.getQueryFields();
-
-        final boolean root = !jsonQuery.isArray() && queryFields.containsKey(jsonQuery.get(NAME).asText());
-
-        if (root) {
-            if (queryFields.get(jsonQuery.get(NAME).asText()).type().equals(HGQLVocabulary.HGQL_QUERY_GET_FIELD)) {
-                return getSelectRoot_GET(jsonQuery);
+        if (query.isRoot()) {
+            final PlanField queryField = query.getRootField();
+            if (queryField.getQueryField().type().equals(HGQLVocabulary.HGQL_QUERY_GET_FIELD)) {
+                return getSelectRoot_GET(query, queryField);
             } else {
-                return getSelectRoot_GET_BY_ID(jsonQuery);
+                return getSelectRoot_GET_BY_ID(query, queryField, input);
             }
         } else {
-            return getSelectNonRoot((ArrayNode) jsonQuery, input, rootType);
+            return getSelectNonRoot(query, input);
         }
     }
 
-    private String getSelectRoot_GET_BY_ID(final JsonNode queryField) {
-
-        final Iterator<JsonNode> urisIter = queryField.get(ARGS).get(URIS).elements();
-
-        final Collection<String> uris = new HashSet<>();
-
-        urisIter.forEachRemaining(uri -> uris.add(uri.asText()));
+    private String getSelectRoot_GET_BY_ID(final PlanQuery query,
+                                           final PlanField queryField,
+                                           final Map<String, Collection<String>> input) {
 
-        final String targetName = queryField.get(TARGET_NAME).asText();
-        final String targetURI = schema.getTypes().get(targetName).getId();
-        final String graphID = ((SPARQLEndpointService) schema.getQueryFields().get(queryField.get(NAME).asText()).service()).getGraph();
-        final String nodeId = queryField.get(NODE_ID).asText();
+        final String targetURI = queryField.getTargetType().getId();
+        final String graphID = graphOf(query);
+        final String nodeId = queryField.getNodeId();
+        // the chunk of the field's uris this query is for (see SPARQLEndpointService#getStrings)
+        final Collection<String> uris = input.getOrDefault(nodeId, Set.of());
         final String selectTriple = toTriple(toVar(nodeId), RDF_TYPE_URI, uriToResource(targetURI));
         String valueSTR = valuesClause(nodeId, uris);
-        String filterSTR = filterClause(nodeId, uris);
 
-        final JsonNode subfields = queryField.get(FIELDS);
-        final String subQuery = getSubQueries(subfields);
+        final String subQuery = getSubQueries(queryField.getFields());
 
         return selectQueryClause(valueSTR + selectTriple + subQuery, graphID);
     }
 
-    private String getSelectRoot_GET(final JsonNode queryField) {
+    private String getSelectRoot_GET(final PlanQuery query, final PlanField queryField) {
 
-        final String targetName = queryField.get(TARGET_NAME).asText();
-        final String targetURI = schema.getTypes().get(targetName).getId();
-        final String graphID = ((SPARQLEndpointService) schema.getQueryFields().get(queryField.get(NAME).asText()).service()).getGraph();
-        final String nodeId = queryField.get(NODE_ID).asText();
-        final String limitOffsetSTR = limitOffsetClause(queryField);
+        final String targetURI = queryField.getTargetType().getId();
+        final String graphID = graphOf(query);
+        final String nodeId = queryField.getNodeId();
+        final String limitOffsetSTR = limitOffsetClause(queryField.getArguments());
         final String selectTriple = toTriple(toVar(nodeId), RDF_TYPE_URI, uriToResource(targetURI));
         final String rootSubquery = selectSubqueryClause(nodeId, selectTriple, limitOffsetSTR);
 
-        final JsonNode subfields = queryField.get(FIELDS);
-        final String whereClause = getSubQueries(subfields);
+        final String whereClause = getSubQueries(queryField.getFields());
 
         return selectQueryClause(rootSubquery + whereClause, graphID);
     }
 
-    private String getSelectNonRoot(final ArrayNode jsonQuery,
-                                    final Collection<String> input,
-                                    final String rootType) {
+    private String getSelectNonRoot(final PlanQuery query, final Map<String, Collection<String>> input) {
 
+        final String graphID = graphOf(query);
 
-        final JsonNode firstField = jsonQuery.elements().next();
-        final String graphID = ((SPARQLEndpointService) schema.getTypes().get(rootType).getFields().get(firstField.get(NAME).asText()).getService()).getGraph();
-        final String parentId = firstField.get(PARENT_ID).asText();
-        final String valueSTR = valuesClause(parentId, input);
+        // one pattern per branch with input; the branches of a merged query are alternatives of one UNION
+        final List<String> branchPatterns = new ArrayList<>();
+        for (final PlanQuery branch : query.getBranches()) {
+            final Collection<String> branchInput = input.get(branch.getParentId());
+            if (branchInput != null && !branchInput.isEmpty()) {
+                branchPatterns.add(valuesClause(branch.getParentId(), branchInput) + getSubQueries(branch.getFields()));
+            }
+        }
+        if (branchPatterns.isEmpty()) {
+            final PlanQuery first = query.getBranches().get(0);
+            return selectQueryClause(valuesClause(first.getParentId(), List.of()) + getSubQueries(first.getFields()), graphID);
+        }
+        if (branchPatterns.size() == 1) {
+            return selectQueryClause(branchPatterns.get(0), graphID);
+        }
+        return selectQueryClause(unionClause(branchPatterns), graphID);
+    }
 
-        final StringBuilder whereClause = new StringBuilder();
-        jsonQuery.elements().forEachRemaining(field -> whereClause.append(getFieldSubquery(field)));
-        return selectQueryClause(valueSTR + (whereClause.toString()), graphID);
+    private String unionClause(final List<String> sparqlPatterns) {
+        return "{ " + String.join(" } UNION { ", sparqlPatterns) + " } ";
     }
 
-    private String getFieldSubquery(final JsonNode fieldJson) {
+    private String graphOf(final PlanQuery query) {
+        return ((SPARQLEndpointService) query.getService()).getGraph();
+    }
 
-        final String fieldName = fieldJson.get(NAME).asText();
+    private String getFieldSubquery(final PlanField field) {
 
-        if (HGQLVocabulary.JSONLD.containsKey(fieldName)) {
+        if (field.isJsonLd()) {
             return "";
         }
 
-        final String fieldURI = schema.getFields().get(fieldName).getId();
-        final String targetName = fieldJson.get(TARGET_NAME).asText();
-        final String parentId = fieldJson.get(PARENT_ID).asText();
-        final String nodeId = fieldJson.get(NODE_ID).asText();
+        final String fieldURI = field.getFieldConfig().getId();
+        final String parentId = field.getParentId();
+        final String nodeId = field.getNodeId();
 
-        final String langFilter = langFilterClause(fieldJson);
+        final String langFilter = langFilterClause(field);
 
-        final String typeURI = (schema.getTypes().containsKey(targetName)) ? schema.getTypes().get(targetName).getId() : "";
+        final String typeURI = (field.getTargetType() == null) ? "" : field.getTargetType().getId();
 
         final String fieldPattern = fieldPattern(parentId, nodeId, fieldURI, typeURI);
 
-        final JsonNode subfields = fieldJson.get(FIELDS);
-
-        final String rest = getSubQueries(subfields);
+        final String rest = getSubQueries(field.getFields());
 
         return optionalClause(fieldPattern + langFilter + rest);
     }
 
-    private String getSubQueries(final JsonNode subfields) {
+    private String getSubQueries(final List<PlanField> subfields) {
 
-        if (subfields.isNull()) {
-            return "";
-        }
         final StringBuilder whereClause = new StringBuilder();
-        subfields.elements().forEachRemaining(field -> whereClause.append(getFieldSubquery(field)));
+        subfields.forEach(field -> whereClause.append(getFieldSubquery(field)));
         return whereClause.toString();
     }
 }
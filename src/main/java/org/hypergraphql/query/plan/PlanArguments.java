@@ -0,0 +1,109 @@
+package org.hypergraphql.query.plan;
+
+import graphql.language.Argument;
+import graphql.language.ArrayValue;
+import graphql.language.IntValue;
+import graphql.language.StringValue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import lombok.Getter;
+
+import static org.hypergraphql.util.HGQLConstants.LANG;
+import static org.hypergraphql.util.HGQLConstants.LIMIT;
+import static org.hypergraphql.util.HGQLConstants.OFFSET;
+import static org.hypergraphql.util.HGQLConstants.URIS;
+
+/**
+ * The arguments of a planned field that the converters act on: paging for _GET query fields, the uris of
+ * _GET_BY_ID query fields and the language filter of literal fields. Anything else is not forwarded.
+ */
+@Getter
+public final class PlanArguments {
+
+    public static final PlanArguments NONE = new PlanArguments(null, null, null, List.of());
+
+    private final Integer limit;
+    private final Integer offset;
+    private final String lang;
+    private final List<String> uris;
+
+    private PlanArguments(final Integer limit, final Integer offset, final String lang, final List<String> uris) {
+
+        this.limit = limit;
+        this.offset = offset;
+        this.lang = lang;
+        this.uris = List.copyOf(uris);
+    }
+
+    public static PlanArguments of(final List<Argument> arguments) {
+
+        if (arguments.isEmpty()) {
+            return NONE;
+        }
+        Integer limit = null;
+        Integer offset = null;
+        String lang = null;
+        final List<String> uris = new ArrayList<>();
+
+        for (final Argument argument : arguments) {
+            final var value = argument.getValue();
+            switch (argument.getName()) {
+                case LIMIT:
+                    limit = value instanceof IntValue ? ((IntValue) value).getValue().intValue() : null;
+                    break;
+                case OFFSET:
+                    offset = value instanceof IntValue ? ((IntValue) value).getValue().intValue() : null;
+                    break;
+                case LANG:
+                    lang = value instanceof StringValue ? ((StringValue) value).getValue() : null;
+                    break;
+                case URIS:
+                    if (value instanceof ArrayValue) {
+                        ((ArrayValue) value).getValues().stream()
+                                .filter(StringValue.class::isInstance)
+                                .forEach(uri -> uris.add(((StringValue) uri).getValue()));
+                    }
+                    break;
+                default:
+                    break; // not used by any of the services
+            }
+        }
+        return new PlanArguments(limit, offset, lang, uris);
+    }
+
+    public boolean hasLang() {
+        return lang != null;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PlanArguments)) {
+            return false;
+        }
+        final var that = (PlanArguments) other;
+        return Objects.equals(limit, that.limit)
+                && Objects.equals(offset, that.offset)
+                && Objects.equals(lang, that.lang)
+                && uris.equals(that.uris);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(limit, offset, lang, uris);
+    }
+
+    @Override
+    public String toString() {
+        return "PlanArguments{"
+                + "limit=" + limit
+                + ", offset=" + offset
+                + ", lang=" + lang
+                + ", uris=" + uris
+                + '}';
+    }
+}
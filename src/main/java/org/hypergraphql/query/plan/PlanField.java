@@ -0,0 +1,160 @@
+package org.hypergraphql.query.plan;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.hypergraphql.config.schema.FieldConfig;
+import org.hypergraphql.config.schema.HGQLVocabulary;
+import org.hypergraphql.config.schema.QueryFieldConfig;
+import org.hypergraphql.config.schema.TypeConfig;
+import org.hypergraphql.datamodel.HGQLSchema;
+
+import static org.hypergraphql.config.schema.HGQLVocabulary.HGQL_QUERY_NAMESPACE;
+
+/**
+ * An immutable field of an execution plan. Everything the converters and result builders need is
+ * resolved against the {@link HGQLSchema} once, when the plan is built: the field and target type
+ * configuration, the RDF predicate and type resources, and the SPARQL variables (node ids) binding the
+ * field and its parent.
+ *
+ * Argument values are the only part of a field that differs between two queries of the same (cached) plan; see
+ * {@link #bind(Map)}.
+ */
+@Getter
+public final class PlanField {
+
+    private final String name;
+    private final String alias;
+    private final String parentId; // null for query fields
+    private final String nodeId;
+    private final String path; // the response keys from the query field down to this one, e.g. "person/name"
+    private final PlanArguments arguments;
+    private final String targetName;
+    private final List<PlanField> fields; // sub-fields fetched by the same service
+    private final FieldConfig fieldConfig;
+    private final TypeConfig targetType;
+    private final QueryFieldConfig queryField;
+    private final Property predicate;
+    private final Resource targetTypeResource;
+    private final Property queryPredicate;
+    private final boolean jsonLd;
+    private final String shape;
+
+    public PlanField(final String name,
+                     final String alias,
+                     final String parentId,
+                     final String nodeId,
+                     final String path,
+                     final PlanArguments arguments,
+                     final String targetName,
+                     final List<PlanField> fields,
+                     final HGQLSchema schema) {
+
+        this.name = name;
+        this.alias = alias;
+        this.parentId = parentId;
+        this.nodeId = nodeId;
+        this.path = path;
+        this.arguments = arguments;
+        this.targetName = targetName;
+        this.fields = List.copyOf(fields);
+        this.fieldConfig = schema.getFields().get(name);
+        this.targetType = targetName == null ? null : schema.getTypes().get(targetName);
+        this.queryField = schema.getQueryFields().get(name);
+        this.predicate = fieldConfig == null ? null : ResourceFactory.createProperty(fieldConfig.getId());
+        this.targetTypeResource = targetType == null ? null : ResourceFactory.createResource(targetType.getId());
+        this.queryPredicate = queryField == null ? null : ResourceFactory.createProperty(HGQL_QUERY_NAMESPACE + getResponseKey());
+        this.jsonLd = HGQLVocabulary.JSONLD.containsKey(name);
+        this.shape = shapeOf();
+    }
+
+    private PlanField(final PlanField planned, final PlanArguments arguments, final List<PlanField> fields) {
+
+        this.name = planned.name;
+        this.alias = planned.alias;
+        this.parentId = planned.parentId;
+        this.nodeId = planned.nodeId;
+        this.path = planned.path;
+        this.arguments = arguments;
+        this.targetName = planned.targetName;
+        this.fields = List.copyOf(fields);
+        this.fieldConfig = planned.fieldConfig;
+        this.targetType = planned.targetType;
+        this.queryField = planned.queryField;
+        this.predicate = planned.predicate;
+        this.targetTypeResource = planned.targetTypeResource;
+        this.queryPredicate = planned.queryPredicate;
+        this.jsonLd = planned.jsonLd;
+        this.shape = shapeOf();
+    }
+
+    private String shapeOf() {
+
+        // the results of a query field are linked to the query node by its response key (see TripleTemplate)
+        return (queryField == null || alias == null ? name : alias + ':' + name)
+                + (arguments == PlanArguments.NONE ? "" : arguments.toString())
+                + (fields.isEmpty() ? "" : fields.stream().map(PlanField::getShape).sorted().collect(Collectors.joining(",", "{", "}")));
+    }
+
+    /**
+     * @param arguments the arguments of a query, by {@link #getPath() path}
+     * @return whether this field and its sub-fields have the given arguments
+     */
+    public boolean isBoundTo(final Map<String, PlanArguments> arguments) {
+        return argumentsIn(arguments).equals(this.arguments) && fields.stream().allMatch(field -> field.isBoundTo(arguments));
+    }
+
+    /**
+     * @param arguments the arguments of a query with the same plan, by {@link #getPath() path}
+     * @return this field (and its sub-fields) with the given arguments
+     */
+    public PlanField bind(final Map<String, PlanArguments> arguments) {
+
+        if (isBoundTo(arguments)) {
+            return this;
+        }
+        return new PlanField(this, argumentsIn(arguments), fields.stream().map(field -> field.bind(arguments)).collect(Collectors.toList()));
+    }
+
+    private PlanArguments argumentsIn(final Map<String, PlanArguments> arguments) {
+        return arguments.getOrDefault(path, PlanArguments.NONE);
+    }
+
+    /**
+     * The key of this field in the response: its alias if it has one, its name otherwise.
+     */
+    public String getResponseKey() {
+        return alias == null ? name : alias;
+    }
+
+    /**
+     * What this field asks of its service, independent of the SPARQL variables it is bound to: two fields
+     * of the same shape fetch the same data for the same input. The alias of a query field is part of it, as
+     * the data of a query field includes the links from the query node under its response key.
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    public boolean isQueryField() {
+        return queryField != null;
+    }
+
+    @Override
+    public String toString() {
+
+        final var result = new StringBuilder(getResponseKey())
+                .append('[').append(nodeId).append(']');
+        if (arguments != PlanArguments.NONE) {
+            result.append(arguments);
+        }
+        if (!fields.isEmpty()) {
+            result.append(' ').append(fields);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,184 @@
+package org.hypergraphql.query.plan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import org.hypergraphql.datafetching.services.Service;
+import org.hypergraphql.datamodel.QueryNode;
+
+/**
+ * The part of an execution plan sent to one service in one go: either a single query field (the root of
+ * the plan), or the sibling fields of a parent type that the service resolves for the URIs handed down
+ * by the parent execution. Several of the latter, bound to different parent markers but fetched from the
+ * same service, can be merged into one query; each of them is then a branch of the merged query.
+ */
+@Getter
+public final class PlanQuery {
+
+    private final Service service;
+    private final String rootType;
+    private final boolean root;
+    private final List<PlanField> fields;
+    private final List<List<QueryNode>> paths;
+    private final List<PlanQuery> branches; // empty unless merged
+    private final String shape;
+    private final TripleTemplate template; // the triples of each solution of the query
+
+    private PlanQuery(final Service service, final String rootType, final boolean root, final List<PlanField> fields) {
+
+        this.service = service;
+        this.rootType = rootType;
+        this.root = root;
+        this.fields = List.copyOf(fields);
+        final List<List<QueryNode>> allPaths = new ArrayList<>();
+        collectPaths(root ? this.fields.get(0).getFields() : this.fields, new LinkedList<>(), allPaths);
+        this.paths = List.copyOf(allPaths);
+        this.branches = List.of();
+        this.shape = rootType + this.fields.stream().map(PlanField::getShape).sorted().collect(Collectors.joining(",", "[", "]"));
+        this.template = TripleTemplate.compile(this.fields);
+    }
+
+    private PlanQuery(final Service service, final List<PlanQuery> branches) {
+
+        this.service = service;
+        this.rootType = branches.stream().map(PlanQuery::getRootType).distinct().collect(Collectors.joining("|"));
+        this.root = false;
+        this.fields = branches.stream().flatMap(branch -> branch.getFields().stream()).collect(Collectors.toUnmodifiableList());
+        this.paths = branches.stream().flatMap(branch -> branch.getPaths().stream()).collect(Collectors.toUnmodifiableList());
+        this.branches = List.copyOf(branches);
+        this.shape = branches.stream().map(PlanQuery::getShape).sorted().collect(Collectors.joining(" + "));
+        this.template = TripleTemplate.compile(this.fields);
+    }
+
+    /**
+     * A plan rooted at a query field, e.g. {@code Person_GET}.
+     */
+    public static PlanQuery root(final Service service, final PlanField queryField) {
+        return new PlanQuery(service, "Query", queryField.isQueryField(), List.of(queryField));
+    }
+
+    /**
+     * A plan for the given fields of {@code parentType}, all resolved by {@code service}.
+     */
+    public static PlanQuery fieldsOf(final Service service, final String parentType, final List<PlanField> fields) {
+        return new PlanQuery(service, parentType, false, fields);
+    }
+
+    /**
+     * One query over the given (non-root) plans of the same service.
+     */
+    public static PlanQuery merge(final Service service, final List<PlanQuery> queries) {
+
+        final List<PlanQuery> branches = new ArrayList<>();
+        queries.forEach(query -> branches.addAll(query.getBranches()));
+        if (branches.stream().anyMatch(PlanQuery::isRoot)) {
+            throw new IllegalArgumentException("Query fields cannot be merged");
+        }
+        return new PlanQuery(service, branches);
+    }
+
+    /**
+     * @param arguments the arguments of a query with the same plan, by {@link PlanField#getPath() path}
+     * @return this query with the given arguments; see {@link PlanField#bind(Map)}
+     */
+    public PlanQuery bind(final Map<String, PlanArguments> arguments) {
+
+        if (fields.stream().allMatch(field -> field.isBoundTo(arguments))) {
+            return this;
+        }
+        if (isMerged()) {
+            return new PlanQuery(service, branches.stream().map(branch -> branch.bind(arguments)).collect(Collectors.toList()));
+        }
+        return new PlanQuery(service, rootType, root, fields.stream().map(field -> field.bind(arguments)).collect(Collectors.toList()));
+    }
+
+    /**
+     * The plans this query was merged from, or just this one.
+     */
+    public List<PlanQuery> getBranches() {
+        return branches.isEmpty() ? List.of(this) : branches;
+    }
+
+    /**
+     * The branches of this query in a canonical order: the branches of two queries of the same
+     * {@link #getShape() shape} correspond one to one, by position.
+     */
+    public List<PlanQuery> getCanonicalBranches() {
+        return getBranches().stream().sorted(Comparator.comparing(PlanQuery::getShape)).collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * What this query asks of its service, independent of the markers (SPARQL variables) it binds: two
+     * queries of the same shape can be answered by one call over the union of their input.
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    public boolean isMerged() {
+        return !branches.isEmpty();
+    }
+
+    /**
+     * The markers whose values this query takes as input: one per branch (none for a root plan).
+     */
+    public List<String> getInputMarkers() {
+
+        if (root) {
+            return List.of();
+        }
+        return getBranches().stream().map(PlanQuery::getParentId).collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * The query field of a root plan.
+     */
+    public PlanField getRootField() {
+        return fields.get(0);
+    }
+
+    /**
+     * The SPARQL variable bound to the input URIs of a non-root, unmerged plan.
+     */
+    public String getParentId() {
+        return fields.get(0).getParentId();
+    }
+
+    /**
+     * Every predicate path from the plan's subjects down to each of its fields, ending with the marker
+     * (node id) of that field.
+     */
+    public List<List<QueryNode>> getPaths() {
+        return paths;
+    }
+
+    private static void collectPaths(final List<PlanField> fields,
+                                     final LinkedList<QueryNode> prefix,
+                                     final List<List<QueryNode>> paths) {
+
+        for (final PlanField field : fields) {
+            if (field.getPredicate() == null) {
+                continue;
+            }
+            final var path = new LinkedList<>(prefix);
+            path.add(new QueryNode(field.getPredicate(), field.getNodeId()));
+            paths.add(List.copyOf(path));
+            collectPaths(field.getFields(), path, paths);
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        if (root) {
+            return getRootField().toString();
+        }
+        return getBranches().stream()
+                .map(branch -> branch.getRootType() + "(" + branch.getParentId() + ") " + branch.getFields())
+                .collect(Collectors.joining(" + "));
+    }
+}
@@ -0,0 +1,303 @@
+package org.hypergraphql.query.plan;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import graphql.language.Argument;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.language.StringValue;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLTypeUtil;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.hypergraphql.config.schema.FieldOfTypeConfig;
+import org.hypergraphql.config.schema.TypeConfig;
+import org.hypergraphql.datamodel.HGQLSchema;
+import org.hypergraphql.datamodel.TripleStore;
+
+import static org.hypergraphql.config.schema.HGQLVocabulary.HGQL_QUERY_NAMESPACE;
+import static org.hypergraphql.config.schema.HGQLVocabulary.HGQL_QUERY_URI;
+import static org.hypergraphql.util.HGQLConstants.ID;
+import static org.hypergraphql.util.HGQLConstants.LANG;
+import static org.hypergraphql.util.HGQLConstants.TYPE;
+
+/**
+ * The "data" of a query's JSON response, compiled once per query shape and written straight from the
+ * request's {@link TripleStore} to a Jackson {@link JsonGenerator}, without running graphql-java.
+ *
+ * Only what HyperGraphQL resolves itself is compiled: a single query without variables, directives or
+ * fragments, selecting query fields, {@code _id}, {@code _type} and list fields of objects, strings or IDs
+ * (strings optionally by {@code lang}). For anything else {@link #compile} returns nothing and the query is
+ * left to graphql-java, which also still validates every query and answers introspection. What is written
+ * is what graphql-java's result serializes to, with the fields in selection order and {@code @context} last.
+ */
+public final class ResponsePlan {
+
+    private static final String QUERY_TYPE = "Query";
+    private static final String CONTEXT_KEY = "@context";
+    private static final Node QUERY_NODE = NodeFactory.createURI(HGQL_QUERY_URI);
+
+    private final Member[] data; // null stands for the JSON-LD context
+
+    private ResponsePlan(final Member[] data) {
+        this.data = data;
+    }
+
+    /**
+     * @return the plan of the given (validated) query, or nothing if it needs graphql-java's execution
+     */
+    public static Optional<ResponsePlan> compile(final Document document, final HGQLSchema schema) {
+
+        final var definitions = document.getDefinitions();
+        if (definitions.size() != 1 || !(definitions.get(0) instanceof OperationDefinition)) {
+            return Optional.empty();
+        }
+        final var operation = (OperationDefinition) definitions.get(0);
+        if (operation.getOperation() != OperationDefinition.Operation.QUERY
+                || !operation.getVariableDefinitions().isEmpty()
+                || !operation.getDirectives().isEmpty()) {
+            return Optional.empty();
+        }
+        final var roots = members(operation.getSelectionSet(), schema.getTypes().get(QUERY_TYPE), schema);
+        if (roots == null) {
+            return Optional.empty();
+        }
+
+        // the fields in selection order, then the JSON-LD context
+        final Map<String, Member> data = new LinkedHashMap<>(roots);
+        data.put(CONTEXT_KEY, null);
+        return Optional.of(new ResponsePlan(data.values().toArray(new Member[0])));
+    }
+
+    /**
+     * The data of one response, written when it is serialized.
+     */
+    public JsonSerializable data(final TripleStore store, final Map<String, String> ldContext) {
+
+        return new JsonSerializable.Base() {
+
+            @Override
+            public void serialize(final JsonGenerator generator, final SerializerProvider provider) throws IOException {
+
+                final var query = store.id(QUERY_NODE);
+                generator.writeStartObject();
+                for (final Member member : data) {
+                    if (member == null) {
+                        provider.defaultSerializeField(CONTEXT_KEY, ldContext, generator);
+                    } else {
+                        generator.writeFieldName(member.key);
+                        member.write(generator, store, query);
+                    }
+                }
+                generator.writeEndObject();
+            }
+
+            @Override
+            public void serializeWithType(final JsonGenerator generator,
+                                          final SerializerProvider provider,
+                                          final TypeSerializer typeSerializer) throws IOException {
+                serialize(generator, provider);
+            }
+        };
+    }
+
+    /**
+     * @return the members of the selection set, by response key; null if any of them cannot be compiled
+     */
+    private static Map<String, Member> members(final SelectionSet selectionSet, final TypeConfig type, final HGQLSchema schema) {
+
+        if (selectionSet == null || type == null) {
+            return null;
+        }
+        final Map<String, Member> members = new LinkedHashMap<>();
+        for (final Selection<?> selection : selectionSet.getSelections()) {
+            if (!(selection instanceof Field)) {
+                return null;
+            }
+            final var field = (Field) selection;
+            final var key = field.getAlias() == null ? field.getName() : field.getAlias();
+            // repeated keys are merged by graphql-java
+            if (!field.getDirectives().isEmpty() || members.containsKey(key)) {
+                return null;
+            }
+            final var member = QUERY_TYPE.equals(type.getName())
+                    ? queryMember(field, key, type, schema)
+                    : member(field, key, type, schema);
+            if (member == null) {
+                return null;
+            }
+            members.put(key, member);
+        }
+        return members;
+    }
+
+    private static Member queryMember(final Field field, final String key, final TypeConfig queryType, final HGQLSchema schema) {
+
+        final var fieldConfig = queryType.getField(field.getName());
+        if (fieldConfig == null || !isFlatList(fieldConfig)) {
+            return null;
+        }
+        // query fields link the query node to their results by their response key, see TripleTemplate
+        final var fields = members(field.getSelectionSet(), schema.getTypes().get(fieldConfig.getTargetName()), schema);
+        return fields == null ? null : new Resources(key, NodeFactory.createURI(HGQL_QUERY_NAMESPACE + key), null, fields);
+    }
+
+    private static Member member(final Field field, final String key, final TypeConfig type, final HGQLSchema schema) {
+
+        if (ID.equals(field.getName())) {
+            return new Id(key);
+        }
+        if (TYPE.equals(field.getName())) {
+            return new Constant(key, type.getId());
+        }
+        final var fieldConfig = type.getField(field.getName());
+        // graphql-java coerces the values of a singular field on its own terms
+        if (fieldConfig == null || !isFlatList(fieldConfig)) {
+            return null;
+        }
+        final var predicate = NodeFactory.createURI(schema.getFields().get(field.getName()).getId());
+        final var targetName = fieldConfig.getTargetName();
+        if ("String".equals(targetName) || "ID".equals(targetName)) {
+            return isLiteralLang(field.getArguments()) ? new Literals(key, predicate, lang(field.getArguments())) : null;
+        }
+        final var targetType = schema.getTypes().get(targetName);
+        if (targetType == null || !field.getArguments().isEmpty()) {
+            return null;
+        }
+        final var targetNode = targetType.getId() == null ? null : NodeFactory.createURI(targetType.getId());
+        final var fields = members(field.getSelectionSet(), targetType, schema);
+        return fields == null ? null : new Resources(key, predicate, targetNode, fields);
+    }
+
+    private static boolean isLiteralLang(final List<Argument> arguments) {
+
+        return arguments.isEmpty()
+                || arguments.size() == 1 && LANG.equals(arguments.get(0).getName()) && arguments.get(0).getValue() instanceof StringValue;
+    }
+
+    private static String lang(final List<Argument> arguments) {
+        return arguments.isEmpty() ? null : ((StringValue) arguments.get(0).getValue()).getValue();
+    }
+
+    private static boolean isFlatList(final FieldOfTypeConfig fieldConfig) {
+
+        final GraphQLType type = GraphQLTypeUtil.unwrapNonNull(fieldConfig.getGraphqlOutputType());
+        return GraphQLTypeUtil.isList(type) && !GraphQLTypeUtil.isList(GraphQLTypeUtil.unwrapNonNull(GraphQLTypeUtil.unwrapOne(type)));
+    }
+
+    /**
+     * One key of a JSON object, with the means of writing its value for a given subject.
+     */
+    private abstract static class Member {
+
+        private final String key;
+
+        Member(final String key) {
+            this.key = key;
+        }
+
+        abstract void write(JsonGenerator generator, TripleStore store, int subject) throws IOException;
+    }
+
+    private static final class Id extends Member {
+
+        Id(final String key) {
+            super(key);
+        }
+
+        @Override
+        void write(final JsonGenerator generator, final TripleStore store, final int subject) throws IOException {
+
+            final var node = store.node(subject);
+            generator.writeString(node.isURI() ? node.getURI() : "_:" + node.getBlankNodeLabel());
+        }
+    }
+
+    private static final class Constant extends Member {
+
+        private final String value;
+
+        Constant(final String key, final String value) {
+            super(key);
+            this.value = value;
+        }
+
+        @Override
+        void write(final JsonGenerator generator, final TripleStore store, final int subject) throws IOException {
+
+            if (value == null) {
+                generator.writeNull();
+            } else {
+                generator.writeString(value);
+            }
+        }
+    }
+
+    private static final class Literals extends Member {
+
+        private final Node predicate;
+        private final String lang; // null for all languages
+
+        Literals(final String key, final Node predicate, final String lang) {
+            super(key);
+            this.predicate = predicate;
+            this.lang = lang;
+        }
+
+        @Override
+        void write(final JsonGenerator generator, final TripleStore store, final int subject) throws IOException {
+
+            generator.writeStartArray();
+            for (final int object : store.objects(subject, store.id(predicate))) {
+                final var value = store.node(object);
+                if (value.isLiteral() && (lang == null || lang.equalsIgnoreCase(value.getLiteralLanguage()))) {
+                    generator.writeString(value.getLiteralLexicalForm());
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static final class Resources extends Member {
+
+        private final Node predicate;
+        private final Node targetType; // null for any
+        private final Member[] fields;
+
+        Resources(final String key, final Node predicate, final Node targetType, final Map<String, Member> fields) {
+            super(key);
+            this.predicate = predicate;
+            this.targetType = targetType;
+            this.fields = fields.values().toArray(new Member[0]);
+        }
+
+        @Override
+        void write(final JsonGenerator generator, final TripleStore store, final int subject) throws IOException {
+
+            final var type = targetType == null ? 0 : store.id(targetType);
+            generator.writeStartArray();
+            for (final int object : store.objects(subject, store.id(predicate))) {
+                if (store.node(object).isLiteral() || targetType != null && !store.hasType(object, type)) {
+                    continue;
+                }
+                generator.writeStartObject();
+                for (final Member field : fields) {
+                    generator.writeFieldName(field.key);
+                    field.write(generator, store, object);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.hypergraphql.query.plan;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.vocabulary.RDF;
+
+import static org.hypergraphql.config.schema.HGQLVocabulary.HGQL_QUERY_URI;
+
+/**
+ * The triples a plan produces for each solution of its SELECT query, compiled once per plan.
+ *
+ * Every field contributes up to three triples: the one linking it to its parent, its type, and, for query
+ * fields, the one linking it to the query. Their variables and constant nodes are resolved when the plan is
+ * built, so turning a solution into triples only reads the binding and writes to the sink.
+ */
+public final class TripleTemplate {
+
+    private static final Node QUERY_NODE = NodeFactory.createURI(HGQL_QUERY_URI);
+    private static final Node TYPE = RDF.type.asNode();
+
+    private final Step[] steps;
+
+    private TripleTemplate(final List<Step> steps) {
+        this.steps = steps.toArray(new Step[0]);
+    }
+
+    static TripleTemplate compile(final List<PlanField> fields) {
+
+        final List<Step> steps = new ArrayList<>();
+        collect(fields, steps);
+        return new TripleTemplate(steps);
+    }
+
+    /**
+     * Writes the triples of one solution to the given sink.
+     */
+    public void emit(final Binding binding, final StreamRDF sink) {
+
+        for (final Step step : steps) {
+            step.emit(binding, sink);
+        }
+    }
+
+    private static void collect(final List<PlanField> fields, final List<Step> steps) {
+
+        for (final PlanField field : fields) {
+            steps.add(new Step(field));
+            collect(field.getFields(), steps);
+        }
+    }
+
+    private static final class Step {
+
+        private final Var subject; // null for query fields
+        private final Node predicate;
+        private final Var object;
+        private final Node type;
+        private final Node queryPredicate;
+
+        private Step(final PlanField field) {
+
+            final var linked = field.getPredicate() != null && field.getParentId() != null;
+            this.subject = linked ? Var.alloc(field.getParentId()) : null;
+            this.predicate = linked ? field.getPredicate().asNode() : null;
+            this.object = Var.alloc(field.getNodeId());
+            this.type = field.getTargetTypeResource() == null ? null : field.getTargetTypeResource().asNode();
+            this.queryPredicate = field.isQueryField() ? field.getQueryPredicate().asNode() : null;
+        }
+
+        private void emit(final Binding binding, final StreamRDF sink) {
+
+            final var value = binding.get(object);
+            if (value == null) {
+                return;
+            }
+            if (subject != null) {
+                final var parent = binding.get(subject);
+                if (parent != null && !parent.isLiteral()) {
+                    sink.triple(Triple.create(parent, predicate, value));
+                }
+            }
+            if (value.isLiteral()) {
+                return;
+            }
+            if (type != null) {
+                sink.triple(Triple.create(value, TYPE, type));
+            }
+            if (queryPredicate != null) {
+                sink.triple(Triple.create(QUERY_NODE, queryPredicate, value));
+            }
+        }
+    }
+}
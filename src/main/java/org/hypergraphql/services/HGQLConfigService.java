@@ -19,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hypergraphql.config.system.HGQLConfig;
+import org.hypergraphql.datafetching.FetchExecutor;
 import org.hypergraphql.datamodel.HGQLSchemaWiring;
 import org.hypergraphql.exception.HGQLConfigurationException;
 import org.hypergraphql.util.PathUtils;
@@ -61,6 +62,7 @@ public class HGQLConfigService {
             final HGQLSchemaWiring wiring = new HGQLSchemaWiring(registry, config.getName(), config.getServiceConfigs());
             config.setGraphQLSchema(wiring.getSchema());
             config.setHgqlSchema(wiring.getHgqlSchema());
+            config.setFetchExecutor(new FetchExecutor(config.getExecutionConfig()));
             return config;
 
         } catch (IOException | URISyntaxException e) {
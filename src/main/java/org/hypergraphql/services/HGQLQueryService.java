@@ -1,39 +1,83 @@
 package org.hypergraphql.services;
 
+import graphql.ErrorType;
 import graphql.ExecutionInput;
 import graphql.ExecutionResult;
 import graphql.GraphQL;
 import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.language.Document;
 import graphql.schema.GraphQLSchema;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
 import org.hypergraphql.config.system.HGQLConfig;
 import org.hypergraphql.datafetching.ExecutionForest;
 import org.hypergraphql.datafetching.ExecutionForestFactory;
+import org.hypergraphql.datafetching.ExecutionPlanCache;
+import org.hypergraphql.datafetching.ExecutionPlanner;
+import org.hypergraphql.datafetching.ExecutionScope;
+import org.hypergraphql.datafetching.FetchExecutor;
 import org.hypergraphql.datamodel.HGQLSchema;
 import org.hypergraphql.datamodel.ModelContainer;
+import org.hypergraphql.datamodel.TripleStore;
 import org.hypergraphql.query.QueryValidator;
 import org.hypergraphql.query.ValidatedQuery;
+import org.hypergraphql.query.plan.ResponsePlan;
 
 /**
  * Created by szymon on 01/11/2017.
  */
 public class HGQLQueryService {
 
+    // formats which need no view of the whole graph to be written
+    private static final Set<Lang> STREAMED_LANGS = Set.of(Lang.NTRIPLES, Lang.NQUADS, Lang.RDFTHRIFT);
+    // streamed formats whose errors are written as trailing comments; the others are aborted
+    private static final Set<Lang> COMMENTED_LANGS = Set.of(Lang.NTRIPLES, Lang.NQUADS);
+    private static final String ERROR_COMMENT = "# error: ";
+
     private final GraphQL graphql;
     private final GraphQLSchema schema;
     private final HGQLSchema hgqlSchema;
+    private final FetchExecutor fetchExecutor;
+    private final ExecutionPlanCache planCache;
+    private final ExecutionForestFactory forestFactory = new ExecutionForestFactory();
+    private final boolean mergeSiblings;
+    private final boolean fastJson;
+    private final QueryResponseCache responseCache; // null unless caching is configured
 
     public HGQLQueryService(final HGQLConfig config) {
         this.hgqlSchema = config.getHgqlSchema();
         this.schema = config.getSchema();
+        this.fetchExecutor = config.getFetchExecutor();
+        this.planCache = new ExecutionPlanCache(config.getExecutionConfig().getPlanCacheSize());
+        this.mergeSiblings = config.getExecutionConfig().isMergeSiblings();
+        this.fastJson = config.getExecutionConfig().isFastJson();
+        final var responseCacheConfig = config.getExecutionConfig().getResponseCache();
+        this.responseCache = responseCacheConfig.isEnabled() ? new QueryResponseCache(responseCacheConfig) : null;
 
         this.graphql = GraphQL.newGraphQL(config.getSchema()).build();
     }
 
     public Map<String, Object> results(final String query, final String acceptType) {
+        return results(query, acceptType, null);
+    }
+
+    /**
+     * @param timeout deadline in milliseconds for fetching the data; null for the configured default
+     */
+    public Map<String, Object> results(final String query, final String acceptType, final Long timeout) {
 
         final Map<String, Object> result = new HashMap<>();
         final Map<String, Object> data = new HashMap<>();
@@ -53,22 +97,32 @@ public class HGQLQueryService {
             return result;
         }
 
-        if (query.contains("IntrospectionQuery") || query.contains("__")) {
+        if (isIntrospection(query)) {
 
             qlResult = graphql.execute(query);
             data.putAll(qlResult.getData());
 
         } else {
 
-            final ExecutionForest queryExecutionForest =
-                    new ExecutionForestFactory().getExecutionForest(validatedQuery.getParsedQuery(), hgqlSchema);
+            final Document document = validatedQuery.getParsedQuery();
+            final ExecutionForest queryExecutionForest = getPlan(document);
 
-            final ModelContainer client = new ModelContainer(queryExecutionForest.generateModel());
+            final TripleStore store;
+            try (var scope = fetchExecutor.openScope(timeout)) {
+                store = queryExecutionForest.generateStore(scope);
+                addScopeErrors(scope, errors);
+            }
 
-            if (acceptType == null) {
+            final var responsePlan = fastJson && acceptType == null
+                    ? queryExecutionForest.getResponsePlan(() -> ResponsePlan.compile(document, hgqlSchema))
+                    : Optional.<ResponsePlan>empty();
+            if (responsePlan.isPresent()) {
+                // written by Jackson when the response is serialized
+                result.put("data", responsePlan.get().data(store, queryExecutionForest.getFullLdContext()));
+            } else if (acceptType == null) {
                 executionInput = ExecutionInput.newExecutionInput()
                         .query(query)
-                        .context(client)
+                        .context(new ModelContainer(store))
                         .build();
 
                 qlResult = graphql.execute(executionInput);
@@ -76,7 +130,7 @@ public class HGQLQueryService {
                 data.putAll(qlResult.getData());
                 data.put("@context", queryExecutionForest.getFullLdContext());
             } else {
-                result.put("data", client.getDataOutput(acceptType));
+                result.put("data", new ModelContainer(store).getDataOutput(acceptType));
             }
         }
 
@@ -86,4 +140,190 @@ public class HGQLQueryService {
         }
         return result;
     }
+
+    /**
+     * Answers a query in an RDF format, writing the data to the stream opened by {@code body} rather than returning it.
+     * The stream is only opened once the query is known to be valid, but before its data is fetched: the streaming
+     * formats (N-Triples, N-Quads and RDF Thrift) are written while fetches are still running, the others once the data is complete.
+     *
+     * Errors found once streamed data has been written (a deadline, a saturated service) can no longer change the status of
+     * the response: N-Triples and N-Quads end with a comment line per error ({@code # error: ...}), and an RDF Thrift
+     * stream is {@link Body#abort() aborted}, so that the client can tell the data is incomplete. A streamed write that fails
+     * (the client has gone away) cancels every fetch of the request straight away.
+     *
+     * @return the result as {@link #results(String, String, Long)} returns it, without the data if it was written
+     */
+    public Map<String, Object> results(final String query, final String format, final Long timeout, final Body body) throws IOException {
+
+        final ValidatedQuery validatedQuery = new QueryValidator(schema).validateQuery(query);
+        if (!validatedQuery.getValid() || isIntrospection(query)) {
+            return results(query, format, timeout);
+        }
+
+        final Map<String, Object> result = new HashMap<>();
+        final List<GraphQLError> errors = new ArrayList<>();
+        result.put("errors", errors);
+        result.put("extensions", new HashMap<>());
+
+        final ExecutionForest queryExecutionForest = getPlan(validatedQuery.getParsedQuery());
+        final var lang = RDFLanguages.nameToLang(format);
+        final var out = body.open();
+        try (var scope = fetchExecutor.openScope(timeout)) {
+            if (lang != null && STREAMED_LANGS.contains(lang)) {
+                final var client = new ClientStream(out, scope);
+                final StreamRDF writer = StreamRDFWriter.getWriterStream(client, lang);
+                writer.start();
+                queryExecutionForest.stream(scope, writer);
+                client.checkError();
+                writer.finish();
+                addScopeErrors(scope, errors);
+                if (!errors.isEmpty()) {
+                    endWithErrors(lang, errors, out, body);
+                }
+            } else {
+                new ModelContainer(queryExecutionForest.generateStore(scope)).writeDataOutput(out, format);
+                addScopeErrors(scope, errors);
+            }
+        }
+        return result;
+    }
+
+    private static void endWithErrors(final Lang lang,
+                                      final List<GraphQLError> errors,
+                                      final OutputStream out,
+                                      final Body body) throws IOException {
+
+        if (!COMMENTED_LANGS.contains(lang)) {
+            body.abort();
+            return;
+        }
+        final var comments = new StringBuilder();
+        errors.forEach(error -> comments.append(ERROR_COMMENT).append(error.getMessage().replace('\n', ' ')).append('\n'));
+        out.write(comments.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isIntrospection(final String query) {
+        return query.contains("IntrospectionQuery") || query.contains("__");
+    }
+
+    private static void addScopeErrors(final ExecutionScope scope, final List<GraphQLError> errors) {
+
+        if (scope.isExpired()) {
+            errors.add(GraphqlErrorBuilder.newError()
+                    .message("Data fetching exceeded the deadline of " + scope.getTimeout() + " ms; the data is partial")
+                    .errorType(ErrorType.ExecutionAborted)
+                    .build());
+        }
+        scope.getSaturatedServices().forEach(serviceId -> errors.add(GraphqlErrorBuilder.newError()
+                .message("Service '" + serviceId + "' is saturated; its data is missing")
+                .errorType(ErrorType.ExecutionAborted)
+                .build()));
+    }
+
+    /**
+     * The execution plan of a query, before and after merging sibling executions; see
+     * {@link ExecutionPlanner#explain(ExecutionForest)}.
+     */
+    public Map<String, Object> explain(final String query) {
+
+        final ValidatedQuery validatedQuery = new QueryValidator(schema).validateQuery(query);
+        if (!validatedQuery.getValid()) {
+            return Map.of("errors", validatedQuery.getErrors());
+        }
+        return ExecutionPlanner.explain(getPlan(validatedQuery.getParsedQuery()));
+    }
+
+    private ExecutionForest getPlan(final Document queryDocument) {
+
+        return planCache.getPlan(queryDocument, () -> {
+            final var forest = forestFactory.getExecutionForest(queryDocument, hgqlSchema);
+            return mergeSiblings ? ExecutionPlanner.mergeSiblings(forest) : forest;
+        });
+    }
+
+    public ExecutionPlanCache getPlanCache() {
+        return planCache;
+    }
+
+    /**
+     * @return the cache of whole responses, which the caller serves and fills; null if caching is not configured
+     */
+    public QueryResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * The stream of a response written while its data is fetched. The first write that fails closes the request's scope,
+     * cancelling its fetches, as nobody is left to read their data.
+     */
+    private static final class ClientStream extends FilterOutputStream {
+
+        private final ExecutionScope scope;
+        private volatile IOException failure;
+
+        ClientStream(final OutputStream out, final ExecutionScope scope) {
+            super(out);
+            this.scope = scope;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+
+            try {
+                out.write(b);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+
+            try {
+                out.write(b, off, len);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        private IOException failed(final IOException e) {
+
+            failure = e;
+            scope.close();
+            return e;
+        }
+
+        /**
+         * @throws IOException the failure of an earlier write, if any
+         */
+        void checkError() throws IOException {
+
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Where the data of a response goes.
+     */
+    public interface Body {
+
+        OutputStream open() throws IOException;
+
+        /**
+         * Ends the response abnormally once data has been written, so that the client does not take it as complete.
+         */
+        void abort() throws IOException;
+    }
 }
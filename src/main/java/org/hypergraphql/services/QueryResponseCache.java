@@ -0,0 +1,149 @@
+package org.hypergraphql.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.language.AstPrinter;
+import graphql.parser.InvalidSyntaxException;
+import graphql.parser.Parser;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.hypergraphql.config.system.CacheConfig;
+
+/**
+ * Whole responses, as serialized for the client, by the normalised text of their query and the MIME type they were
+ * written in. The variables of a request are not part of the key, as they are not used to answer it. A hit is served as it is, without validating, planning or fetching anything.
+ *
+ * Only complete responses are cached, so a response with errors (a deadline or a saturated service included) is
+ * computed again next time. Entries are bounded by their size in bytes and dropped after the time to live, or all at
+ * once through {@link #invalidateAll()}. Each entry carries a strong ETag, a hash of its bytes, for conditional requests.
+ */
+public class QueryResponseCache {
+
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int ETAG_HASH_BYTES = 16;
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    private final CacheConfig config;
+    private final Cache<String, CachedResponse> responses;
+
+    public QueryResponseCache(final CacheConfig config) {
+
+        this.config = config;
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxBytes())
+                .weigher((String key, CachedResponse response) -> ENTRY_OVERHEAD + 2 * key.length() + response.body.length)
+                .expireAfterWrite(config.getTtl(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param mimeType the format the response is written in, or null for JSON
+     * @return the key of the response, or null if the query cannot even be parsed (its errors are not cached)
+     */
+    public static String keyOf(final String query, final String mimeType) {
+
+        final String normalised;
+        try {
+            // independent of whitespace, comments and formatting, as the shapes of the ExecutionPlanCache
+            normalised = AstPrinter.printAst(new Parser().parseDocument(query));
+        } catch (InvalidSyntaxException e) {
+            return null;
+        }
+        return mimeType + '\n' + normalised;
+    }
+
+    public CachedResponse get(final String key) {
+        return responses.getIfPresent(key);
+    }
+
+    /**
+     * @return the response as it is cached
+     */
+    public CachedResponse put(final String key, final byte[] body, final String contentType) {
+
+        final var response = new CachedResponse(body, contentType, System.currentTimeMillis() + config.getTtl());
+        responses.put(key, response);
+        return response;
+    }
+
+    /**
+     * @return the number of seconds the given response stays fresh for (in this cache, and so for clients)
+     */
+    public long maxAge(final CachedResponse response) {
+        return Math.max(0, (response.expiresAt - System.currentTimeMillis()) / MILLIS_PER_SECOND);
+    }
+
+    public void invalidateAll() {
+        responses.invalidateAll();
+    }
+
+    public int getMaxBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, config.getMaxBytes());
+    }
+
+    /**
+     * @return a strong ETag (quoted) for the given bytes
+     */
+    public static String etagOf(final byte[] body) {
+
+        try {
+            final var hash = MessageDigest.getInstance("SHA-256").digest(body);
+            final var tag = Base64.getUrlEncoder().withoutPadding().encode(Arrays.copyOf(hash, ETAG_HASH_BYTES));
+            return '"' + new String(tag, StandardCharsets.US_ASCII) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+
+        final var stats = responses.stats();
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", responses.estimatedSize());
+        result.put("bytes", responses.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        result.put("maxBytes", config.getMaxBytes());
+        result.put("ttl", config.getTtl());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    /**
+     * One response, as it was written to the client (before any compression).
+     */
+    public static final class CachedResponse {
+
+        private final byte[] body;
+        private final String contentType;
+        private final String etag;
+        private final long expiresAt;
+
+        private CachedResponse(final byte[] body, final String contentType, final long expiresAt) {
+            this.body = body;
+            this.contentType = contentType;
+            this.etag = etagOf(body);
+            this.expiresAt = expiresAt;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
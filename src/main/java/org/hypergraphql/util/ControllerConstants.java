@@ -4,6 +4,12 @@ public final class ControllerConstants {
 
     public static final String WILDCARD = "*";
     public static final String ORIGIN_HEADER = "Origin";
+    public static final String TIMEOUT_HEADER = "X-HGQL-Timeout";
+    public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    public static final String GZIP = "gzip";
+    public static final String ETAG_HEADER = "ETag";
+    public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    public static final String CACHE_CONTROL_HEADER = "Cache-Control";
 
     private ControllerConstants() {
         // do not allow direct instantiation
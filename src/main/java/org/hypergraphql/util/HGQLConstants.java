@@ -3,16 +3,11 @@ package org.hypergraphql.util;
 public final class HGQLConstants {
 
     // data
-    public static final String ALIAS = "alias";
     public static final String LIMIT = "limit";
     public static final String OFFSET = "offset";
     public static final String LANG = "lang";
     public static final String URIS = "uris";
-    public static final String FIELDS = "fields";
-    public static final String NAME = "name";
-    public static final String NODE_ID = "nodeId";
     public static final String PARENT_ID = "parentId";
-    public static final String TARGET_NAME = "targetName";
     public static final String ARGS = "args";
     public static final String ID = "_id";
     public static final String TYPE = "_type";
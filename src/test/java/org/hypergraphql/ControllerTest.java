@@ -5,7 +5,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
@@ -19,6 +22,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -30,6 +34,8 @@ class ControllerTest {
     private static final String BASE_PATH = "http://localhost:";
     private static final int ONE_S_IN_MS = 1000;
     private static final int TRIPLE_COUNT = 167;
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
     private HGQLConfig config;
 
     private Controller controller;
@@ -78,6 +84,57 @@ class ControllerTest {
         assertEquals("text/html", mediaType.getContentType()); // TODO
     }
 
+    @Test
+    void malformed_variables_should_be_a_bad_request() throws Exception {
+
+        Thread.sleep(ONE_S_IN_MS);
+        assertBadRequest("{ not json");
+    }
+
+    @Test
+    void variables_should_be_rejected_rather_than_ignored() throws Exception {
+
+        Thread.sleep(ONE_S_IN_MS);
+        assertBadRequest("{ \"limit\": 1 }");
+        assertEquals(OK, getWithVariables("{}").getStatusLine().getStatusCode());
+    }
+
+    @Test
+    void if_none_match_should_match_listed_etags() {
+
+        final var etag = "\"abc\"";
+        assertTrue(Controller.matches(etag, etag));
+        assertTrue(Controller.matches("\"xyz\", W/\"abc\"", etag));
+        assertTrue(Controller.matches("*", etag));
+        assertFalse(Controller.matches("\"xyz\"", etag));
+        assertFalse(Controller.matches(null, etag));
+    }
+
+    private void assertBadRequest(final String variables) throws Exception {
+
+        final var response = getWithVariables(variables);
+        final String body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        assertEquals(BAD_REQUEST, response.getStatusLine().getStatusCode());
+        assertTrue(body.contains("\"errors\"") && body.contains("variables"), body);
+    }
+
+    private HttpResponse getWithVariables(final String variables) throws Exception {
+
+        final var uri = new URIBuilder(BASE_PATH + config.getGraphqlConfig().port() + config.getGraphqlConfig().graphQLPath())
+                .addParameter("query", "{ Company_GET(limit: 1) { name } }")
+                .addParameter("variables", variables)
+                .build();
+        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+
+            final HttpGet get = new HttpGet(uri);
+            get.addHeader("Accept", "application/json");
+            final var response = httpClient.execute(get);
+            // read while the client is open
+            response.setEntity(new StringEntity(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+            return response;
+        }
+    }
+
     private Envelope getPath(final String path, final String acceptHeader) throws IOException {
 
         final Envelope envelope;
@@ -0,0 +1,97 @@
+package org.hypergraphql.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.hypergraphql.config.schema.HGQLVocabulary;
+
+/**
+ * Both ends of one hop between HyperGraphQL instances, per format the {@link
+ * org.hypergraphql.datafetching.services.HGraphQLService} can negotiate: the serving instance writing the data
+ * (streamed where the format allows, as the Controller does) and the calling one parsing it. The network is left
+ * out; the bytes each format needs are printed alongside.
+ *
+ * Run with {@code ./gradlew benchmark -Pbenchmark=RDFFormatBenchmark [-Pa=resources]}.
+ */
+public final class RDFFormatBenchmark {
+
+    private static final String NS = "http://example.org/";
+    private static final List<Lang> FORMATS = List.of(Lang.RDFTHRIFT, Lang.NTRIPLES, Lang.RDFXML);
+    private static final int DEFAULT_RESOURCES = 100_000;
+    private static final int ROUNDS = 5;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private RDFFormatBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+
+        final var resources = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RESOURCES;
+        final var model = sample(resources);
+
+        // warm up, then time
+        for (int round = 0; round <= ROUNDS; round++) {
+            for (final Lang lang : FORMATS) {
+                final var writeStart = System.nanoTime();
+                final var bytes = write(model, lang);
+                final var writeNanos = System.nanoTime() - writeStart;
+
+                final var readStart = System.nanoTime();
+                final var read = ModelFactory.createDefaultModel();
+                RDFDataMgr.read(read, new ByteArrayInputStream(bytes), lang);
+                final var readNanos = System.nanoTime() - readStart;
+
+                if (read.size() != model.size()) {
+                    throw new IllegalStateException(lang.getLabel() + " lost triples");
+                }
+                if (round > 0) {
+                    System.out.printf("round %d: %-10s write %,.0f triples/s, parse %,.0f triples/s, %,d bytes%n",
+                            round, lang.getLabel(), model.size() * NANOS_PER_SECOND / writeNanos,
+                            model.size() * NANOS_PER_SECOND / readNanos, bytes.length);
+                }
+            }
+        }
+    }
+
+    private static byte[] write(final Model model, final Lang lang) {
+
+        final var out = new ByteArrayOutputStream();
+        if (StreamRDFWriter.registered(lang)) {
+            final var writer = StreamRDFWriter.getWriterStream(out, lang);
+            writer.start();
+            model.getGraph().find().forEachRemaining(writer::triple);
+            writer.finish();
+        } else {
+            RDFDataMgr.write(out, model, lang);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The shape of a query result: typed resources linked from the query node, each with labels and a link.
+     */
+    private static Model sample(final int resources) {
+
+        final var model = ModelFactory.createDefaultModel();
+        final var query = model.createResource(HGQLVocabulary.HGQL_QUERY_URI);
+        final var queryField = model.createProperty(HGQLVocabulary.HGQL_QUERY_NAMESPACE + "Person_GET");
+        final var type = model.createResource(NS + "Person");
+        final var knows = model.createProperty(NS + "knows");
+        for (int i = 0; i < resources; i++) {
+            final var person = model.createResource(NS + "person/" + i);
+            query.addProperty(queryField, person);
+            person.addProperty(RDF.type, type);
+            person.addProperty(RDFS.label, "Person " + i, "en");
+            person.addProperty(RDFS.label, "Persona " + i, "es");
+            person.addProperty(knows, model.createResource(NS + "person/" + (i + 1) % resources));
+        }
+        return model;
+    }
+}
@@ -0,0 +1,89 @@
+package org.hypergraphql.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSetFactory;
+import org.apache.jena.query.ResultSetRewindable;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.ResultSetMgr;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+/**
+ * Parsing the SELECT results of a remote endpoint, per result format the {@link
+ * org.hypergraphql.datafetching.services.SPARQLEndpointService} can negotiate. Each solution is read as
+ * {@link org.hypergraphql.datafetching.SPARQLEndpointExecution} reads it, one at a time; the network is left out
+ * and the bytes each format needs are printed alongside.
+ *
+ * Run with {@code ./gradlew benchmark -Pbenchmark=SPARQLResultFormatBenchmark [-Pa=solutions]}.
+ */
+public final class SPARQLResultFormatBenchmark {
+
+    private static final String NS = "http://example.org/";
+    private static final List<Lang> FORMATS = List.of(
+            ResultSetLang.SPARQLResultSetThrift,
+            ResultSetLang.SPARQLResultSetTSV,
+            ResultSetLang.SPARQLResultSetJSON
+    );
+    // the shape of the queries SPARQLServiceConverter writes: a marker, its type and a labelled value
+    private static final String QUERY = "SELECT ?x_1 ?x_1_type ?x_1_1 WHERE { ?x_1 a ?x_1_type ; <" + RDFS.label + "> ?x_1_1 }";
+    private static final int DEFAULT_SOLUTIONS = 100_000;
+    private static final int ROUNDS = 5;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private SPARQLResultFormatBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+
+        final var solutions = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SOLUTIONS;
+        final ResultSetRewindable results;
+        try (var execution = QueryExecutionFactory.create(QUERY, sample(solutions))) {
+            results = ResultSetFactory.copyResults(execution.execSelect());
+        }
+
+        // warm up, then time
+        for (int round = 0; round <= ROUNDS; round++) {
+            for (final Lang lang : FORMATS) {
+                results.reset();
+                final var out = new ByteArrayOutputStream();
+                ResultSetMgr.write(out, results, lang);
+                final var bytes = out.toByteArray();
+
+                final var start = System.nanoTime();
+                final var read = ResultSetMgr.read(new ByteArrayInputStream(bytes), lang);
+                var count = 0;
+                while (read.hasNext()) {
+                    read.nextBinding();
+                    count++;
+                }
+                final var nanos = System.nanoTime() - start;
+
+                if (count != results.size()) {
+                    throw new IllegalStateException(lang.getLabel() + " lost solutions");
+                }
+                if (round > 0) {
+                    System.out.printf("round %d: %-32s parse %,.0f solutions/s, %,d bytes%n",
+                            round, lang.getHeaderString(), count * NANOS_PER_SECOND / nanos, bytes.length);
+                }
+            }
+        }
+    }
+
+    private static Model sample(final int solutions) {
+
+        final var model = ModelFactory.createDefaultModel();
+        final var type = model.createResource(NS + "Person");
+        for (int i = 0; i < solutions; i++) {
+            model.createResource(NS + "person/" + i)
+                    .addProperty(RDF.type, type)
+                    .addProperty(RDFS.label, "Person " + i, "en");
+        }
+        return model;
+    }
+}
@@ -0,0 +1,142 @@
+package org.hypergraphql.benchmark;
+
+import graphql.parser.Parser;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.core.ResultBinding;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.binding.BindingMap;
+import org.apache.jena.vocabulary.RDF;
+import org.hypergraphql.config.schema.HGQLVocabulary;
+import org.hypergraphql.datafetching.ExecutionForestFactory;
+import org.hypergraphql.query.plan.PlanField;
+import org.hypergraphql.query.plan.PlanQuery;
+import org.hypergraphql.services.HGQLConfigService;
+
+/**
+ * Rows per second turned into triples: one Model per field and solution, copied upwards (as results were
+ * built before plans had a {@link org.hypergraphql.query.plan.TripleTemplate}), against the template writing
+ * into one graph.
+ *
+ * Run with {@code ./gradlew benchmark -Pbenchmark=TripleTemplateBenchmark [-Pa=rows]}.
+ */
+public final class TripleTemplateBenchmark {
+
+    private static final String CONFIG = "test_batching_config.json";
+    private static final String QUERY = "{ Person_GET { birthPlace { label } } }";
+    private static final int DEFAULT_ROWS = 200_000;
+    private static final int ROUNDS = 5;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private TripleTemplateBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+
+        final var rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        final var query = plan();
+        final var bindings = bindings(query, rows);
+
+        // warm up, then time
+        for (int round = 0; round <= ROUNDS; round++) {
+            final var legacyStart = System.nanoTime();
+            final var legacy = perSolutionModels(query, bindings);
+            final var legacyNanos = System.nanoTime() - legacyStart;
+
+            final var templateStart = System.nanoTime();
+            final var templated = template(query, bindings);
+            final var templateNanos = System.nanoTime() - templateStart;
+
+            if (!legacy.isIsomorphicWith(templated)) {
+                throw new IllegalStateException("The template and the per-solution models disagree");
+            }
+            if (round > 0) {
+                System.out.printf("round %d: per-solution models %,.0f rows/s, template %,.0f rows/s (%d triples)%n",
+                        round, rows * NANOS_PER_SECOND / legacyNanos, rows * NANOS_PER_SECOND / templateNanos, templated.size());
+            }
+        }
+    }
+
+    private static PlanQuery plan() {
+
+        final var inputStream = TripleTemplateBenchmark.class.getClassLoader().getResourceAsStream(CONFIG);
+        final var config = new HGQLConfigService().loadHGQLConfig(CONFIG, inputStream, true);
+        try {
+            final var forest = new ExecutionForestFactory().getExecutionForest(new Parser().parseDocument(QUERY), config.getHgqlSchema());
+            return forest.getForest().iterator().next().getQuery();
+        } finally {
+            config.getFetchExecutor().shutdown();
+        }
+    }
+
+    /**
+     * Distinct resources for every object field and a literal for every scalar one, in each row.
+     */
+    private static List<Binding> bindings(final PlanQuery query, final int rows) {
+
+        final List<Binding> bindings = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            final var binding = BindingFactory.create();
+            bind(query.getFields(), binding, row);
+            bindings.add(binding);
+        }
+        return bindings;
+    }
+
+    private static void bind(final List<PlanField> fields, final BindingMap binding, final int row) {
+
+        for (final PlanField field : fields) {
+            final var node = field.getTargetTypeResource() == null
+                    ? NodeFactory.createLiteral(field.getNodeId() + row, XSDDatatype.XSDstring)
+                    : NodeFactory.createURI("http://example.org/" + field.getNodeId() + "/" + row);
+            binding.add(Var.alloc(field.getNodeId()), node);
+            bind(field.getFields(), binding, row);
+        }
+    }
+
+    private static Model template(final PlanQuery query, final List<Binding> bindings) {
+
+        final var model = ModelFactory.createDefaultModel();
+        final var sink = StreamRDFLib.graph(model.getGraph());
+        bindings.forEach(binding -> query.getTemplate().emit(binding, sink));
+        return model;
+    }
+
+    private static Model perSolutionModels(final PlanQuery query, final List<Binding> bindings) {
+
+        final var union = ModelFactory.createDefaultModel();
+        for (final Binding binding : bindings) {
+            union.add(fieldModels(query.getFields(), new ResultBinding(null, binding)));
+        }
+        return union;
+    }
+
+    private static Model fieldModels(final List<PlanField> fields, final QuerySolution solution) {
+
+        final var model = ModelFactory.createDefaultModel();
+        for (final PlanField field : fields) {
+            final var fieldModel = ModelFactory.createDefaultModel();
+            final var object = solution.get(field.getNodeId());
+            if (field.getPredicate() != null && field.getParentId() != null && object != null) {
+                fieldModel.add(solution.getResource(field.getParentId()), field.getPredicate(), object);
+            }
+            if (field.getTargetTypeResource() != null && object != null) {
+                fieldModel.add(object.asResource(), RDF.type, field.getTargetTypeResource());
+            }
+            if (field.isQueryField() && object != null) {
+                fieldModel.add(fieldModel.createResource(HGQLVocabulary.HGQL_QUERY_URI), field.getQueryPredicate(), object);
+            }
+            model.add(fieldModel);
+            model.add(fieldModels(field.getFields(), solution));
+        }
+        return model;
+    }
+}
@@ -0,0 +1,102 @@
+package org.hypergraphql.datafetching;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import org.hypergraphql.config.system.BulkheadConfig;
+import org.hypergraphql.config.system.ExecutionConfig;
+import org.hypergraphql.exception.HGQLServiceSaturatedException;
+import org.hypergraphql.services.HGQLConfigService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkheadTest {
+
+    private static final long LONG_WAIT = 60_000;
+
+    private final FetchExecutor executor = new FetchExecutor(ExecutionConfig.defaults());
+
+    @AfterEach
+    void cleanUp() {
+        executor.shutdown();
+    }
+
+    @Test
+    void bulkheads_should_be_opt_in() {
+
+        assertEquals(0, BulkheadConfig.defaults().getMaxConcurrent());
+        assertEquals(0L, BulkheadConfig.defaults().getMaxWait());
+
+        final var configPath = "test_planner_config.json";
+        final var config = new HGQLConfigService().loadHGQLConfig(configPath, getClass().getClassLoader().getResourceAsStream(configPath), true);
+        try {
+            assertNull(config.getHgqlSchema().getServices().get("companies").getBulkhead());
+        } finally {
+            config.getFetchExecutor().shutdown();
+        }
+    }
+
+    @Test
+    void saturated_service_should_fail_fast() throws InterruptedException {
+
+        final var bulkhead = new Bulkhead("slow", new BulkheadConfig(1, 0, LONG_WAIT));
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        try (var scope = executor.openScope()) {
+            final var running = CompletableFuture.runAsync(() -> bulkhead.execute(scope, () -> {
+                started.countDown();
+                await(release);
+                return null;
+            }));
+            started.await();
+
+            final var e = assertThrows(HGQLServiceSaturatedException.class, () -> bulkhead.execute(scope, () -> "rejected"));
+            assertEquals("slow", e.getServiceId());
+            assertEquals(1, bulkhead.getStats().get("running"));
+
+            release.countDown();
+            running.join();
+        }
+        assertEquals(1L, bulkhead.getStats().get("admitted"));
+        assertEquals(1L, bulkhead.getStats().get("rejected"));
+        assertEquals(0, bulkhead.getStats().get("running"));
+    }
+
+    @Test
+    void queued_query_should_run_once_a_slot_frees_up() throws InterruptedException {
+
+        final var bulkhead = new Bulkhead("busy", new BulkheadConfig(1, 1, LONG_WAIT));
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+
+        try (var scope = executor.openScope()) {
+            final var running = CompletableFuture.runAsync(() -> bulkhead.execute(scope, () -> {
+                started.countDown();
+                await(release);
+                return null;
+            }));
+            started.await();
+
+            final var queued = CompletableFuture.supplyAsync(() -> bulkhead.execute(scope, () -> "queued"));
+            release.countDown();
+
+            assertEquals("queued", queued.join());
+            running.join();
+        }
+        assertEquals(2L, bulkhead.getStats().get("admitted"));
+        assertEquals(0L, bulkhead.getStats().get("rejected"));
+    }
+
+    private static void await(final CountDownLatch latch) {
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.hypergraphql.datafetching;
+
+import graphql.parser.Parser;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypergraphql.config.system.HGQLConfig;
+import org.hypergraphql.query.converters.SPARQLServiceConverter;
+import org.hypergraphql.services.HGQLConfigService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionPlanCacheTest {
+
+    private static final int CACHE_SIZE = 2;
+    private static final int EXPECTED_COMPILATIONS = 4;
+    private static final int OTHER_LIMIT = 3;
+
+    private final Parser parser = new Parser();
+    private HGQLConfig config;
+
+    @BeforeEach
+    void startUp() {
+
+        final var configPath = "test_planner_config.json";
+        final var inputStream = getClass().getClassLoader().getResourceAsStream(configPath);
+        config = new HGQLConfigService().loadHGQLConfig(configPath, inputStream, true);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        config.getFetchExecutor().shutdown();
+    }
+
+    @Test
+    void same_query_shape_should_reuse_the_plan() {
+
+        final var cache = new ExecutionPlanCache(CACHE_SIZE);
+        final var compiled = new AtomicInteger(0);
+
+        final var first = cache.getPlan(parser.parseDocument("{ person { name } }"), () -> compile(compiled));
+        final var second = cache.getPlan(parser.parseDocument("{\n  person {\n    name # formatted differently\n  }\n}"), () -> compile(compiled));
+
+        assertSame(first, second);
+        assertEquals(1, compiled.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void least_recently_used_plan_should_be_evicted() {
+
+        final var cache = new ExecutionPlanCache(CACHE_SIZE);
+        final var compiled = new AtomicInteger(0);
+
+        final var a = cache.getPlan(parser.parseDocument("{ a { name } }"), () -> compile(compiled));
+        cache.getPlan(parser.parseDocument("{ b { name } }"), () -> compile(compiled));
+        cache.getPlan(parser.parseDocument("{ a { name } }"), () -> compile(compiled));
+        cache.getPlan(parser.parseDocument("{ c { name } }"), () -> compile(compiled));
+
+        assertEquals(CACHE_SIZE, cache.size());
+        assertSame(a, cache.getPlan(parser.parseDocument("{ a { name } }"), () -> compile(compiled)));
+        // b was evicted by c, and now evicts c in turn
+        cache.getPlan(parser.parseDocument("{ b { name } }"), () -> compile(compiled));
+        assertEquals(EXPECTED_COMPILATIONS, compiled.get());
+        assertEquals(2L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    void disabled_cache_should_always_compile() {
+
+        final var cache = new ExecutionPlanCache(0);
+        final var compiled = new AtomicInteger(0);
+
+        final var first = cache.getPlan(parser.parseDocument("{ a { name } }"), () -> compile(compiled));
+        final var second = cache.getPlan(parser.parseDocument("{ a { name } }"), () -> compile(compiled));
+
+        assertNotSame(first, second);
+        assertEquals(2, compiled.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void other_argument_values_should_reuse_the_plan_with_their_own_arguments() {
+
+        final var cache = new ExecutionPlanCache(CACHE_SIZE);
+        final var compiled = new AtomicInteger(0);
+
+        final var two = plan(cache, "{ Company_GET(limit: 2) { name owner { name } } }", compiled);
+        final var three = plan(cache, "{ Company_GET(limit: 3) { name owner { name } } }", compiled);
+        final var twoAgain = plan(cache, "{ Company_GET(limit: 2) { name owner { name } } }", compiled);
+
+        assertEquals(1, compiled.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+
+        // the same plan as long as the values are the same, a copy bound to the request's values otherwise
+        assertSame(two, twoAgain);
+        assertNotSame(two, three);
+        assertEquals(2, rootOf(two).getQuery().getRootField().getArguments().getLimit());
+        assertEquals(OTHER_LIMIT, rootOf(three).getQuery().getRootField().getArguments().getLimit());
+        final var sparql = new SPARQLServiceConverter(config.getHgqlSchema()).getSelectQuery(rootOf(three).getQuery(), Map.of(), "Query");
+        assertTrue(sparql.contains("LIMIT " + OTHER_LIMIT + " "));
+
+        // everything else is planned the same
+        assertEquals(rootOf(two).getQuery().getRootField().getNodeId(), rootOf(three).getQuery().getRootField().getNodeId());
+        assertEquals(rootOf(two).getChildrenNodes().keySet(), rootOf(three).getChildrenNodes().keySet());
+        assertEquals(rootOf(two).getExecutionChildren().size(), rootOf(three).getExecutionChildren().size());
+    }
+
+    @Test
+    void shapes_should_not_depend_on_argument_values() {
+
+        assertEquals(
+                ExecutionPlanCache.shapeOf(parser.parseDocument("{ Company_GET(limit: 2) { name } }")),
+                ExecutionPlanCache.shapeOf(parser.parseDocument("{ Company_GET(limit: 3) { name } }"))
+        );
+        assertNotEquals(
+                ExecutionPlanCache.shapeOf(parser.parseDocument("{ Company_GET(limit: 2) { name } }")),
+                ExecutionPlanCache.shapeOf(parser.parseDocument("{ Company_GET(limit: 2, offset: 1) { name } }"))
+        );
+    }
+
+    private ExecutionForest plan(final ExecutionPlanCache cache, final String query, final AtomicInteger compiled) {
+
+        final var document = parser.parseDocument(query);
+        return cache.getPlan(document, () -> {
+            compiled.incrementAndGet();
+            return ExecutionPlanner.mergeSiblings(new ExecutionForestFactory().getExecutionForest(document, config.getHgqlSchema()));
+        });
+    }
+
+    private static ExecutionTreeNode rootOf(final ExecutionForest forest) {
+        return forest.getForest().iterator().next();
+    }
+
+    private static ExecutionForest compile(final AtomicInteger compiled) {
+        compiled.incrementAndGet();
+        return new ExecutionForest();
+    }
+}
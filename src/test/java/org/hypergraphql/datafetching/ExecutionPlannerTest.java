@@ -0,0 +1,95 @@
+package org.hypergraphql.datafetching;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.hypergraphql.config.system.HGQLConfig;
+import org.hypergraphql.query.QueryValidator;
+import org.hypergraphql.query.converters.SPARQLServiceConverter;
+import org.hypergraphql.services.HGQLConfigService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionPlannerTest {
+
+    private static final String QUERY = "{ Company_GET(limit: 10) { name city { label } owner { name } } }";
+    private static final int UNMERGED_QUERIES = 3;
+
+    private HGQLConfig config;
+
+    @BeforeEach
+    void startUp() {
+
+        final var configPath = "test_planner_config.json";
+        final var inputStream = getClass().getClassLoader().getResourceAsStream(configPath);
+        config = new HGQLConfigService().loadHGQLConfig(configPath, inputStream, true);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        config.getFetchExecutor().shutdown();
+    }
+
+    @Test
+    void same_service_siblings_should_be_merged_into_one_execution() {
+
+        final var forest = plan();
+        final var root = forest.getForest().iterator().next();
+        assertEquals(2, root.logicalChildren().size());
+
+        ExecutionPlanner.mergeSiblings(forest);
+
+        final List<ExecutionTreeNode> executions = root.getExecutionChildren();
+        assertEquals(1, executions.size());
+        final var merged = executions.get(0).getQuery();
+        assertTrue(merged.isMerged());
+        assertEquals(Set.copyOf(root.getChildrenNodes().keySet()), Set.copyOf(merged.getInputMarkers()));
+    }
+
+    @Test
+    void merged_query_should_keep_each_branch_bound_to_its_own_input() {
+
+        final var forest = ExecutionPlanner.mergeSiblings(plan());
+        final var merged = forest.getForest().iterator().next().getExecutionChildren().get(0).getQuery();
+        final var markers = merged.getInputMarkers();
+
+        final var sparql = new SPARQLServiceConverter(config.getHgqlSchema()).getSelectQuery(
+                merged,
+                Map.of(markers.get(0), Set.of("http://test/a"), markers.get(1), Set.of("http://test/b")),
+                merged.getRootType());
+
+        assertTrue(sparql.contains(" UNION "));
+        assertTrue(sparql.contains("VALUES ?" + markers.get(0) + " { <http://test/a> }"));
+        assertTrue(sparql.contains("VALUES ?" + markers.get(1) + " { <http://test/b> }"));
+
+        // a branch without input is left out altogether
+        final var single = new SPARQLServiceConverter(config.getHgqlSchema()).getSelectQuery(
+                merged,
+                Map.of(markers.get(0), Set.of("http://test/a")),
+                merged.getRootType());
+        assertFalse(single.contains(" UNION "));
+        assertFalse(single.contains("?" + markers.get(1) + " "));
+    }
+
+    @Test
+    void explain_should_count_remote_queries_before_and_after_merging() {
+
+        final var explanation = ExecutionPlanner.explain(ExecutionPlanner.mergeSiblings(plan()));
+        final var queries = (Map<?, ?>) explanation.get("remoteQueries");
+
+        assertEquals(UNMERGED_QUERIES, queries.get("logical"));
+        assertEquals(2, queries.get("physical"));
+    }
+
+    private ExecutionForest plan() {
+
+        final var validatedQuery = new QueryValidator(config.getSchema()).validateQuery(QUERY);
+        assertTrue(validatedQuery.getValid());
+        return new ExecutionForestFactory().getExecutionForest(validatedQuery.getParsedQuery(), config.getHgqlSchema());
+    }
+}
@@ -0,0 +1,72 @@
+package org.hypergraphql.datafetching;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.hypergraphql.config.system.ExecutionConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionScopeTest {
+
+    private static final long TIMEOUT_MS = 50;
+    private static final long WAIT_SECONDS = 10;
+
+    private final FetchExecutor executor = new FetchExecutor(ExecutionConfig.defaults());
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void deadline_should_expire_scope_and_abort_in_flight_calls() {
+
+        final var aborted = new AtomicBoolean(false);
+        final var release = new CountDownLatch(1);
+
+        try (var scope = executor.openScope(TIMEOUT_MS)) {
+            scope.onCancel(() -> aborted.set(true));
+            final var slow = scope.supplyAsync(() -> {
+                try {
+                    return release.await(WAIT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            });
+
+            assertFalse(scope.awaitDeadline(slow));
+            assertTrue(scope.isExpired());
+            assertFalse(scope.isActive());
+            assertTrue(aborted.get());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void work_finishing_in_time_should_not_expire_scope() {
+
+        try (var scope = executor.openScope(TimeUnit.SECONDS.toMillis(WAIT_SECONDS))) {
+            final CompletableFuture<String> fast = scope.supplyAsync(() -> "done");
+
+            assertTrue(scope.awaitDeadline(fast));
+            assertFalse(scope.isExpired());
+            assertEquals("done", fast.join());
+        }
+    }
+
+    @Test
+    void scope_without_deadline_should_report_unbounded_time() {
+
+        try (var scope = executor.openScope()) {
+            assertFalse(scope.hasDeadline());
+            assertEquals(Long.MAX_VALUE, scope.remainingMillis());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.hypergraphql.datafetching;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.jena.rdf.model.Model;
+import org.hypergraphql.config.system.ExecutionConfig;
+import org.hypergraphql.config.system.HGQLConfig;
+import org.hypergraphql.query.QueryValidator;
+import org.hypergraphql.services.HGQLConfigService;
+import org.hypergraphql.services.HGQLQueryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FetchBatcherTest {
+
+    // the same child shape (City { label }) under two top-level fields
+    private static final String QUERY = "{ "
+            + "Person_GET(limit: 2) { birthPlace { label } } "
+            + "others: Person_GET(limit: 3) { birthPlace { label } } "
+            + "}";
+    // the same top-level field twice, under different aliases
+    private static final String DUPLICATE_QUERY = "{ "
+            + "first: Person_GET(limit: 2) { birthPlace { label } } "
+            + "second: Person_GET(limit: 2) { birthPlace { label } } "
+            + "}";
+    // list fields only: the singular birthPlace is not resolved by graphql-java
+    private static final String ALIASED_QUERY = "{ "
+            + "first: City_GET(limit: 2) { _id label } "
+            + "second: City_GET(limit: 2) { _id label } "
+            + "}";
+    private static final int MEMO_HITS = 1;
+    private static final long LONG_WINDOW = 60_000;
+    private static final int FETCHES = 4;
+    private static final int BATCHED_CALLS = 3;
+
+    private HGQLConfig config;
+
+    @BeforeEach
+    void startUp() {
+
+        final var configPath = "test_batching_config.json";
+        final var inputStream = getClass().getClassLoader().getResourceAsStream(configPath);
+        config = new HGQLConfigService().loadHGQLConfig(configPath, inputStream, true);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        config.getFetchExecutor().shutdown();
+    }
+
+    @Test
+    void same_shape_fetches_should_share_a_call_once_the_level_completes() {
+
+        // with a long window, only the completion of the top level sends the queued fetches
+        final var batching = new FetchExecutor(executionConfig(LONG_WINDOW));
+        final var unbatched = new FetchExecutor(executionConfig(0L));
+        try (var batchedScope = batching.openScope(); var unbatchedScope = unbatched.openScope()) {
+
+            final Model batchedModel = plan(QUERY).generateModel(batchedScope);
+            final Model unbatchedModel = plan(QUERY).generateModel(unbatchedScope);
+
+            assertEquals(FETCHES, batchedScope.getBatcher().getFetches());
+            assertEquals(BATCHED_CALLS, batchedScope.getBatcher().getServiceCalls());
+            assertEquals(FETCHES, unbatchedScope.getBatcher().getServiceCalls());
+            assertTrue(batchedModel.size() > 0);
+            assertTrue(batchedModel.isIsomorphicWith(unbatchedModel));
+        } finally {
+            batching.shutdown();
+            unbatched.shutdown();
+        }
+    }
+
+    @Test
+    void identical_fetches_should_share_one_call() {
+
+        final var executor = new FetchExecutor(executionConfig(0L));
+        try (var scope = executor.openScope()) {
+
+            final Model model = plan(DUPLICATE_QUERY).generateModel(scope);
+
+            // each alias links its own results to the query node; only the children under them are shared
+            assertEquals(FETCHES, scope.getBatcher().getFetches());
+            assertEquals(FETCHES - MEMO_HITS, scope.getBatcher().getServiceCalls());
+            assertEquals(MEMO_HITS, scope.getBatcher().getMemoHits());
+            assertTrue(model.size() > 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void queued_fetches_should_fail_when_the_scope_expires() {
+
+        final var executor = new FetchExecutor(executionConfig(LONG_WINDOW));
+        try (var scope = executor.openScope()) {
+            final var root = plan(QUERY).getForest().iterator().next();
+            final var child = root.getExecutionChildren().get(0);
+
+            // the root is never released, so the level never completes and the child stays queued
+            scope.getBatcher().fetch(root, Map.of());
+            final var queued = scope.getBatcher().fetch(child,
+                    Map.of(child.getQuery().getInputMarkers().get(0), Set.of("http://dbpedia.org/resource/Corfu")));
+            assertFalse(queued.isDone());
+
+            scope.expire();
+            assertTrue(queued.isCompletedExceptionally());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aliases_of_the_same_query_field_should_get_the_same_data() {
+
+        final var result = new HGQLQueryService(config).results(ALIASED_QUERY, null);
+
+        assertTrue(((List<?>) result.get("errors")).isEmpty());
+        final var data = (Map<String, Object>) result.get("data");
+        final var first = (List<Object>) data.get("first");
+        assertEquals(2, first.size());
+        assertEquals(first, data.get("second"));
+    }
+
+    private ExecutionConfig executionConfig(final Long batchWindow) {
+        return new ExecutionConfig(null, null, null, null, null, null, null, batchWindow, null, null);
+    }
+
+    private ExecutionForest plan(final String query) {
+
+        final var validatedQuery = new QueryValidator(config.getSchema()).validateQuery(query);
+        assertTrue(validatedQuery.getValid());
+        return new ExecutionForestFactory().getExecutionForest(validatedQuery.getParsedQuery(), config.getHgqlSchema());
+    }
+}
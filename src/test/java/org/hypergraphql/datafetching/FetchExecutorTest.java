@@ -0,0 +1,92 @@
+package org.hypergraphql.datafetching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.hypergraphql.config.system.ExecutionConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FetchExecutorTest {
+
+    private static final int QUEUE_SIZE = 10;
+    private static final int TASK_COUNT = 10;
+    private static final int TASK_SUM = 45;
+    private static final long WAIT_SECONDS = 10;
+
+    private final FetchExecutor executor = new FetchExecutor(new ExecutionConfig(null, 1, QUEUE_SIZE, null, null, null, null, null, null, null));
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void await_should_run_queued_task_in_caller_when_pool_is_busy() throws Exception {
+
+        final var release = new CountDownLatch(1);
+        final var blocker = executor.submit(() -> release.await(WAIT_SECONDS, TimeUnit.SECONDS));
+
+        final var queued = executor.submit(() -> Thread.currentThread().getName());
+        assertEquals(1, executor.getQueueDepth());
+
+        assertEquals(Thread.currentThread().getName(), executor.await(queued));
+
+        release.countDown();
+        assertTrue(executor.await(blocker));
+    }
+
+    @Test
+    void closing_a_scope_should_cancel_unfinished_work() {
+
+        final var release = new CountDownLatch(1);
+        final var scope = executor.openScope();
+        final var running = scope.fork(() -> release.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        final var queued = scope.fork(() -> "never");
+
+        scope.close();
+        release.countDown();
+
+        assertTrue(running.isCancelled());
+        assertTrue(queued.isCancelled());
+        assertThrows(RejectedExecutionException.class, () -> scope.fork(() -> "too late"));
+        assertEquals(0, executor.getStats().get("openScopes"));
+    }
+
+    @Test
+    void virtual_mode_should_fall_back_or_run_tasks() throws Exception {
+
+        final var virtual = new FetchExecutor(new ExecutionConfig("virtual", 1, 1, null, null, null, null, null, null, null));
+        try (var scope = virtual.openScope()) {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < TASK_COUNT; i++) {
+                final int value = i;
+                futures.add(scope.fork(() -> value));
+            }
+            int sum = 0;
+            for (final var future : futures) {
+                sum += scope.join(future);
+            }
+            assertEquals(TASK_SUM, sum);
+        } finally {
+            virtual.shutdown();
+        }
+    }
+
+    @Test
+    void stats_should_report_queue_and_activity() {
+
+        final var stats = executor.getStats();
+
+        assertEquals(0, stats.get("activeCount"));
+        assertEquals(0, stats.get("queueDepth"));
+        assertEquals(1, stats.get("maximumPoolSize"));
+    }
+}
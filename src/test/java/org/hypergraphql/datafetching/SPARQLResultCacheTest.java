@@ -0,0 +1,100 @@
+package org.hypergraphql.datafetching;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.hypergraphql.config.system.CacheConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SPARQLResultCacheTest {
+
+    private static final long TTL = 60_000;
+    private static final String QUERY = "SELECT * WHERE { ?x_1 ?p ?o }";
+    private static final String RESOURCE = "http://data.hypergraphql.org/resources/123456";
+    private static final Set<String> MARKERS = Set.of("x_1");
+
+    @Test
+    void same_query_should_be_fetched_once() {
+
+        final var cache = new SPARQLResultCache(new CacheConfig(TTL, null));
+        final var fetched = new AtomicInteger(0);
+
+        final var first = cache.get(QUERY, MARKERS, query -> fetch(fetched, MARKERS));
+        final var second = cache.get(QUERY, MARKERS, query -> fetch(fetched, MARKERS));
+
+        assertEquals(1, fetched.get());
+        assertNotSame(first.getModel(), second.getModel());
+        assertTrue(first.getModel().isIsomorphicWith(second.getModel()));
+        assertEquals(first.getResultSet(), second.getResultSet());
+        // a copy, which the caller may add to
+        second.getResultSet().get("x_1").add("http://data.hypergraphql.org/resources/other");
+        assertEquals(Set.of(RESOURCE), cache.get(QUERY, MARKERS, query -> fetch(fetched, MARKERS)).getResultSet().get("x_1"));
+
+        final var stats = cache.getStats();
+        assertEquals(2L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(1L, stats.get("size"));
+    }
+
+    @Test
+    void same_query_for_other_markers_should_be_fetched_again() {
+
+        // e.g. the same fields with a different sub-selection: the text is shared, the markers of the children are not
+        final var cache = new SPARQLResultCache(new CacheConfig(TTL, null));
+        final var fetched = new AtomicInteger(0);
+        final var nestedMarkers = Set.of("x_1", "x_1_1");
+
+        final var flat = cache.get(QUERY, MARKERS, query -> fetch(fetched, MARKERS));
+        final var nested = cache.get(QUERY, nestedMarkers, query -> fetch(fetched, nestedMarkers));
+
+        assertEquals(2, fetched.get());
+        assertEquals(MARKERS, flat.getResultSet().keySet());
+        assertEquals(nestedMarkers, nested.getResultSet().keySet());
+        assertEquals(nestedMarkers, cache.get(QUERY, nestedMarkers, query -> fetch(fetched, nestedMarkers)).getResultSet().keySet());
+        assertEquals(MARKERS, cache.get(QUERY, MARKERS, query -> fetch(fetched, MARKERS)).getResultSet().keySet());
+        assertEquals(2, fetched.get());
+    }
+
+    @Test
+    void failed_fetches_should_not_be_cached() {
+
+        final var cache = new SPARQLResultCache(new CacheConfig(TTL, null));
+        final var fetched = new AtomicInteger(0);
+
+        assertThrows(IllegalStateException.class, () -> cache.get(QUERY, MARKERS, query -> {
+            throw new IllegalStateException("endpoint down");
+        }));
+        cache.get(QUERY, MARKERS, query -> fetch(fetched, MARKERS));
+
+        assertEquals(1, fetched.get());
+        assertEquals(0L, cache.getStats().get("hits"));
+    }
+
+    @Test
+    void caching_should_be_opt_in() {
+
+        assertFalse(CacheConfig.defaults().isEnabled());
+        assertTrue(new CacheConfig(TTL, null).isEnabled());
+    }
+
+    private static SPARQLExecutionResult fetch(final AtomicInteger fetched, final Set<String> markers) {
+
+        fetched.incrementAndGet();
+        final var model = ModelFactory.createDefaultModel();
+        model.add(model.createResource(RESOURCE), RDFS.label, model.createLiteral("Test", "en"));
+        final Map<String, Collection<String>> resultSet = new HashMap<>();
+        markers.forEach(marker -> resultSet.put(marker, new HashSet<>(Set.of(RESOURCE))));
+        return new SPARQLExecutionResult(resultSet, model);
+    }
+}
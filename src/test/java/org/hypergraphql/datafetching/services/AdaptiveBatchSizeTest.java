@@ -0,0 +1,72 @@
+package org.hypergraphql.datafetching.services;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import org.hypergraphql.config.system.BatchingConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveBatchSizeTest {
+
+    private static final int MIN_SIZE = 4;
+    private static final int INITIAL_SIZE = 8;
+    private static final int GROWN_SIZE = 12;
+    private static final int MAX_SIZE = 16;
+    private static final int MAX_BYTES = 100;
+    private static final long FAST_RESPONSE = 50;
+    private static final long SLOW_RESPONSE = 5000;
+    private static final String URI = "http://example.org/resource/"; // about 46 bytes once encoded into VALUES
+
+    private final BatchingConfig config = new BatchingConfig(MIN_SIZE, INITIAL_SIZE, MAX_SIZE, MAX_BYTES, FAST_RESPONSE, null);
+
+    @Test
+    void fast_full_chunks_should_grow_up_to_the_ceiling() {
+
+        final var batchSize = new AdaptiveBatchSize(config);
+
+        batchSize.record(INITIAL_SIZE, FAST_RESPONSE, true);
+        assertEquals(GROWN_SIZE, batchSize.getSize());
+        batchSize.record(GROWN_SIZE, FAST_RESPONSE, true);
+        assertEquals(MAX_SIZE, batchSize.getSize());
+    }
+
+    @Test
+    void slow_or_partial_chunks_should_keep_the_size() {
+
+        final var batchSize = new AdaptiveBatchSize(config);
+
+        batchSize.record(INITIAL_SIZE, SLOW_RESPONSE, true);
+        batchSize.record(1, FAST_RESPONSE, true);
+        assertEquals(INITIAL_SIZE, batchSize.getSize());
+    }
+
+    @Test
+    void failed_chunks_should_halve_down_to_the_floor() {
+
+        final var batchSize = new AdaptiveBatchSize(config);
+
+        batchSize.record(INITIAL_SIZE, SLOW_RESPONSE, false);
+        assertEquals(INITIAL_SIZE / 2, batchSize.getSize());
+        batchSize.record(INITIAL_SIZE / 2, SLOW_RESPONSE, false);
+        assertEquals(MIN_SIZE, batchSize.getSize());
+        assertEquals(2L, batchSize.getStats().get("failed"));
+    }
+
+    @Test
+    void chunks_should_be_cut_by_encoded_length() {
+
+        final var batchSize = new AdaptiveBatchSize(config);
+        final Queue<Map.Entry<String, String>> markedUris = new ArrayDeque<>();
+        for (int i = 0; i < INITIAL_SIZE; i++) {
+            markedUris.add(Map.entry("x_1", URI + i));
+        }
+
+        final var chunk = batchSize.nextChunk(markedUris);
+
+        // two URIs fit in 100 bytes, a third does not
+        assertEquals(2, chunk.get("x_1").size());
+        assertEquals(INITIAL_SIZE - 2, markedUris.size());
+    }
+}
@@ -0,0 +1,52 @@
+package org.hypergraphql.datafetching.services;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import org.hypergraphql.config.system.ExecutionConfig;
+import org.hypergraphql.config.system.HttpConfig;
+import org.hypergraphql.config.system.ServiceConfig;
+import org.hypergraphql.datafetching.FetchExecutor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HGraphQLServiceTest {
+
+    private static final int HTTP_OK = 200;
+    private static final String NTRIPLES = "application/ntriples";
+    private static final String TRIPLE = "<http://example.org/a> <http://example.org/b> \"c\" .\n";
+
+    @Test
+    void timeouts_of_zero_should_mean_no_limit() throws IOException {
+
+        final var server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // a peer that serves N-Triples, and JSON when asked for anything else
+        server.createContext("/graphql", exchange -> {
+            final var ntriples = NTRIPLES.equals(exchange.getRequestHeaders().getFirst("Accept"));
+            final var body = (ntriples ? TRIPLE : "{}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", ntriples ? NTRIPLES : "application/json");
+            exchange.sendResponseHeaders(HTTP_OK, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        final var executor = new FetchExecutor(ExecutionConfig.defaults());
+        final var service = new HGraphQLService();
+        try {
+            service.setParameters(new ServiceConfig("remote", "HGraphQLService",
+                    "http://localhost:" + server.getAddress().getPort() + "/graphql", null, null, null, null, null, null, null,
+                    new HttpConfig(0L, 0L, 0L, null, null, null), null));
+            try (var scope = executor.openScope()) {
+                assertEquals(1, service.getModelFromRemote("{ a_GET { _id } }", scope).size());
+            }
+        } finally {
+            service.close();
+            executor.shutdown();
+            server.stop(0);
+        }
+    }
+}
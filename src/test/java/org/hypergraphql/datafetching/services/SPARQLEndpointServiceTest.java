@@ -0,0 +1,226 @@
+package org.hypergraphql.datafetching.services;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.hypergraphql.config.system.BatchingConfig;
+import org.hypergraphql.config.system.HGQLConfig;
+import org.hypergraphql.config.system.HttpConfig;
+import org.hypergraphql.config.system.ServiceConfig;
+import org.hypergraphql.datafetching.ExecutionForestFactory;
+import org.hypergraphql.datafetching.ExecutionScope;
+import org.hypergraphql.datafetching.SPARQLEndpointExecution;
+import org.hypergraphql.datafetching.SPARQLExecutionResult;
+import org.hypergraphql.datamodel.HGQLSchema;
+import org.hypergraphql.query.plan.PlanQuery;
+import org.hypergraphql.query.QueryValidator;
+import org.hypergraphql.services.HGQLConfigService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SPARQLEndpointServiceTest {
+
+    // three people born in three cities; both services send one URI per chunk
+    private static final String QUERY = "{ Person_GET_BY_ID(uris: ["
+            + "\"http://dbpedia.org/resource/Nikolaos_Ventouras\", "
+            + "\"http://dbpedia.org/resource/Andreas_Ekberg\", "
+            + "\"http://dbpedia.org/resource/Sani_ol_molk\"]) { birthPlace { label } } }";
+    private static final String[] PEOPLE = {"Nikolaos_Ventouras", "Andreas_Ekberg", "Sani_ol_molk"};
+    private static final String[] CITIES = {"Corfu", "Malm\u00f6", "Kashan"};
+    private static final int MAX_CONNECTIONS = 4;
+    private static final int HTTP_OK = 200;
+    private static final String NO_RESULTS = "{ \"head\": { \"vars\": [] }, \"results\": { \"bindings\": [] } }";
+
+    private HGQLConfig config;
+
+    @BeforeEach
+    void startUp() {
+
+        final var configPath = "test_chunking_config.json";
+        final var inputStream = getClass().getClassLoader().getResourceAsStream(configPath);
+        config = new HGQLConfigService().loadHGQLConfig(configPath, inputStream, true);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        config.getFetchExecutor().shutdown();
+    }
+
+    @Test
+    void every_chunk_should_be_fetched_and_merged() {
+
+        final var validatedQuery = new QueryValidator(config.getSchema()).validateQuery(QUERY);
+        assertTrue(validatedQuery.getValid());
+        final var forest = new ExecutionForestFactory().getExecutionForest(validatedQuery.getParsedQuery(), config.getHgqlSchema());
+
+        try (var scope = config.getFetchExecutor().openScope()) {
+            final var model = forest.generateModel(scope);
+
+            // the places service only gets the cities found across all of the people chunks
+            for (final String city : CITIES) {
+                final var cityResource = ResourceFactory.createResource("http://dbpedia.org/resource/" + city);
+                assertTrue(model.contains(cityResource, RDFS.label), "no label for " + city);
+            }
+        }
+
+        final var places = config.getHgqlSchema().getServices().get("places").getStats();
+        assertEquals(1L, chunkStats(places).get("queries"));
+        assertEquals((long) CITIES.length, chunkStats(places).get("chunks"));
+    }
+
+    @Test
+    void every_chunk_of_a_query_field_should_ask_for_its_own_uris() {
+
+        final var validatedQuery = new QueryValidator(config.getSchema()).validateQuery(QUERY);
+        assertTrue(validatedQuery.getValid());
+        final var forest = new ExecutionForestFactory().getExecutionForest(validatedQuery.getParsedQuery(), config.getHgqlSchema());
+        final var root = forest.getForest().iterator().next();
+
+        final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+        final var endpoint = new SPARQLEndpointService() {
+            @Override
+            protected SPARQLEndpointExecution buildExecutor(final PlanQuery query,
+                                                            final Map<String, Collection<String>> inputSubset,
+                                                            final Collection<String> markers,
+                                                            final HGQLSchema schema,
+                                                            final String rootType,
+                                                            final ExecutionScope scope) {
+                return new SPARQLEndpointExecution(query, inputSubset, markers, this, schema, rootType, scope) {
+                    @Override
+                    protected SPARQLExecutionResult fetch(final String sparqlQuery) {
+                        queries.add(sparqlQuery);
+                        return new SPARQLExecutionResult(new HashMap<>(), ModelFactory.createDefaultModel());
+                    }
+                };
+            }
+        };
+        endpoint.setParameters(new ServiceConfig("endpoint", "SPARQLEndpointService", "http://localhost:0/sparql", null, "", "",
+                null, null, new BatchingConfig(1, 1, 1, null, null, 2), null, null, null));
+
+        try (var scope = config.getFetchExecutor().openScope()) {
+            endpoint.executeQuery(root.getQuery(), Map.of(), root.getChildrenNodes().keySet(), root.getRootType(), config.getHgqlSchema(), scope);
+        }
+
+        assertEquals((long) PEOPLE.length, chunkStats(endpoint.getStats()).get("chunks"));
+        assertEquals(PEOPLE.length, queries.size());
+        assertEquals(PEOPLE.length, Set.copyOf(queries).size());
+        for (final String query : queries) {
+            final var asked = Arrays.stream(PEOPLE).filter(person -> query.contains("<http://dbpedia.org/resource/" + person + ">")).count();
+            assertEquals(1L, asked, "not one person in " + query);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void endpoint_services_should_own_a_pooled_client() {
+
+        final var http = new HttpConfig(null, null, null, MAX_CONNECTIONS, null, null);
+        final var endpoint = new SPARQLEndpointService();
+        endpoint.setParameters(new ServiceConfig("endpoint", "SPARQLEndpointService", "http://localhost:0/sparql", null, "", "",
+                null, null, null, null, http, null));
+        final var other = new SPARQLEndpointService();
+        other.setParameters(new ServiceConfig("other", "SPARQLEndpointService", "http://localhost:0/sparql", null, "", "",
+                null, null, null, null, null, null));
+
+        assertNotNull(endpoint.getHttpClient());
+        assertNotSame(endpoint.getHttpClient(), other.getHttpClient());
+        final var connections = (Map<String, Object>) endpoint.getStats().get("connections");
+        assertEquals(0, connections.get("leased"));
+        assertEquals(0, connections.get("idle"));
+        assertEquals(MAX_CONNECTIONS, connections.get("max"));
+
+        // the local services of the configuration have no endpoint to connect to
+        assertNull(((SPARQLEndpointService) config.getHgqlSchema().getServices().get("places")).getHttpClient());
+    }
+
+    @Test
+    void closed_services_should_shut_their_pool_down() {
+
+        final var endpoint = new SPARQLEndpointService();
+        endpoint.setParameters(new ServiceConfig("endpoint", "SPARQLEndpointService", "http://localhost:0/sparql", null, "", "",
+                null, null, null, null, null, null));
+        endpoint.close();
+
+        assertThrows(IllegalStateException.class, () -> endpoint.getHttpClient().execute(new HttpGet("http://localhost:0/sparql")));
+    }
+
+    @Test
+    void select_formats_should_fall_back_in_order() {
+
+        final var endpoint = new SPARQLEndpointService();
+        endpoint.setParameters(new ServiceConfig("endpoint", "SPARQLEndpointService", "http://localhost:0/sparql", null, "", "",
+                null, null, null, null, null, null));
+
+        assertEquals("application/sparql-results+thrift, text/tab-separated-values;q=0.9, application/sparql-results+json;q=0.8",
+                endpoint.getSelectAccept(endpoint.getSelectFormat()));
+        assertTrue(endpoint.downgradeSelectFormat(0));
+        // a second failure of the same format, seen by a concurrent chunk, moves no further
+        assertTrue(endpoint.downgradeSelectFormat(0));
+        assertEquals("text/tab-separated-values, application/sparql-results+json;q=0.9", endpoint.getSelectAccept(endpoint.getSelectFormat()));
+        assertTrue(endpoint.downgradeSelectFormat(1));
+        assertEquals("application/sparql-results+json", endpoint.getStats().get("selectFormat"));
+        assertFalse(endpoint.downgradeSelectFormat(2));
+    }
+
+    @Test
+    void selects_should_send_the_whole_accept_header() throws IOException {
+
+        final var validatedQuery = new QueryValidator(config.getSchema()).validateQuery(QUERY);
+        final var forest = new ExecutionForestFactory().getExecutionForest(validatedQuery.getParsedQuery(), config.getHgqlSchema());
+        final var root = forest.getForest().iterator().next();
+
+        final List<String> accepted = Collections.synchronizedList(new ArrayList<>());
+        final var server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/sparql", exchange -> {
+            accepted.add(exchange.getRequestHeaders().getFirst("Accept"));
+            final var body = NO_RESULTS.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/sparql-results+json");
+            exchange.sendResponseHeaders(HTTP_OK, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            final var endpoint = new SPARQLEndpointService();
+            endpoint.setParameters(new ServiceConfig("endpoint", "SPARQLEndpointService",
+                    "http://localhost:" + server.getAddress().getPort() + "/sparql", null, "", "", null, null, null, null, null, null));
+            try (var scope = config.getFetchExecutor().openScope()) {
+                endpoint.executeQuery(root.getQuery(), Map.of(), root.getChildrenNodes().keySet(), root.getRootType(), config.getHgqlSchema(), scope);
+            }
+
+            assertFalse(accepted.isEmpty());
+            accepted.forEach(accept -> assertEquals(endpoint.getSelectAccept(0), accept));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> chunkStats(final Map<String, Object> serviceStats) {
+        return (Map<String, Object>) serviceStats.get("chunks");
+    }
+}
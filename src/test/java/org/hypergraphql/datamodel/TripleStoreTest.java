@@ -0,0 +1,84 @@
+package org.hypergraphql.datamodel;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TripleStoreTest {
+
+    private static final String NS = "http://example.org/";
+    private static final int TRIPLES = 6;
+
+    @Test
+    void store_should_hold_the_distinct_triples_of_its_input() {
+
+        final var model = sample();
+        final var builder = TripleStore.builder();
+        builder.add(model.getGraph());
+        builder.add(model.getGraph()); // the same data from two executions
+        final var store = builder.freeze();
+
+        assertEquals(TRIPLES, store.size());
+        assertTrue(store.toModel().isIsomorphicWith(model));
+    }
+
+    @Test
+    void frozen_store_should_ignore_late_triples() {
+
+        final var builder = TripleStore.builder();
+        final var store = builder.freeze();
+        builder.add(sample().getGraph());
+
+        assertEquals(0, store.size());
+        assertEquals(store, builder.freeze());
+    }
+
+    @Test
+    void objects_should_be_filtered_by_type_and_language() {
+
+        final var container = new ModelContainer(TripleStore.of(sample().getGraph()));
+        final var alice = sample().createResource(NS + "alice");
+
+        final List<RDFNode> people = container.getValuesOfObjectProperty(alice, NS + "knows", NS + "Person");
+        assertEquals(1, people.size());
+        assertEquals(NS + "bob", people.get(0).asResource().getURI());
+        assertEquals(2, container.getValuesOfObjectProperty(alice, NS + "knows").size());
+
+        assertEquals(List.of("Alice"), container.getValuesOfDataProperty(alice, RDFS.label.getURI(), Map.of("lang", "en")));
+        assertEquals(2, container.getValuesOfDataProperty(alice, RDFS.label.getURI(), Map.of()).size());
+        assertTrue(container.getValuesOfObjectProperty(alice, NS + "unknown").isEmpty());
+    }
+
+    @Test
+    void subjects_should_be_found_by_type() {
+
+        final var container = new ModelContainer(TripleStore.of(sample().getGraph()));
+
+        final List<RDFNode> people = container.getSubjectsOfObjectProperty(RDF.type.getURI(), NS + "Person");
+        assertEquals(2, people.size());
+        assertFalse(people.stream().anyMatch(node -> node.asResource().getURI().equals(NS + "acme")));
+    }
+
+    private static Model sample() {
+
+        final var model = ModelFactory.createDefaultModel();
+        final var person = model.createResource(NS + "Person");
+        final var alice = model.createResource(NS + "alice", person);
+        final var bob = model.createResource(NS + "bob", person);
+        final var knows = model.createProperty(NS + "knows");
+        alice.addProperty(knows, bob);
+        alice.addProperty(knows, model.createResource(NS + "acme"));
+        alice.addProperty(RDFS.label, "Alice", "en");
+        alice.addProperty(RDFS.label, "Alicja", "pl");
+        return model;
+    }
+}
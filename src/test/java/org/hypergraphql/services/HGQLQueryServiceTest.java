@@ -1,17 +1,57 @@
 package org.hypergraphql.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ErrorType;
+import graphql.GraphQLError;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.hypergraphql.config.system.ExecutionConfig;
 import org.hypergraphql.config.system.HGQLConfig;
+import org.hypergraphql.datafetching.ExecutionScope;
+import org.hypergraphql.datafetching.FetchExecutor;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class HGQLQueryServiceTest {
 
+    // list fields only, so written without graphql-java when fastJson is on
+    private static final String FLAT_QUERY = "{ "
+            + "City_GET(limit: 3) { _id _type label english: label(lang: \"en\") } "
+            + "people: Person_GET(limit: 2) { _id } "
+            + "}";
+    // a repeated key, which is left to graphql-java to merge
+    private static final String MERGED_QUERY = "{ City_GET(limit: 2) { _id label label } }";
+    private static final String BIRTH_PLACES_QUERY = "{ Person_GET(limit: 2) { _id birthPlace { label } } }";
+    // people are local; places are asked of a SilentEndpoint
+    private static final String SILENT_PLACES_CONFIG = "{ \"name\": \"silent\", \"schema\": \"test_batching_schema.graphql\", "
+            + "\"server\": { \"graphql\": \"/graphql\", \"graphiql\": \"/graphiql\" }, \"services\": [ "
+            + "{ \"id\": \"people\", \"type\": \"LocalModelSPARQLService\", "
+            + "\"filepath\": \"src/test/resources/test_services/cities.ttl\", \"filetype\": \"TTL\" }, "
+            + "{ \"id\": \"places\", \"type\": \"SPARQLEndpointService\", \"url\": \"http://localhost:%d/sparql\", "
+            + "\"graph\": \"\", \"user\": \"\", \"password\": \"\" } ] }";
+    private static final long LONG_TIMEOUT = 60_000;
+
     private final HGQLConfigService configService = new HGQLConfigService();
+    private final ObjectMapper mapper = new ObjectMapper();
 
     @Test
     void results_with_no_accept_type() {
@@ -39,4 +79,157 @@ class HGQLQueryServiceTest {
         assertFalse(actual.isEmpty());
         assertTrue(actual.containsKey("data"));
     }
+
+    @Test
+    void fast_json_should_write_what_graphql_java_does() throws IOException {
+
+        final HGQLConfig fastConfig = load("test_fast_json_config.json");
+        final HGQLConfig config = load("test_batching_config.json");
+        try {
+            final var fast = new HGQLQueryService(fastConfig);
+            final var reference = new HGQLQueryService(config);
+
+            final Map<String, Object> fastResult = fast.results(FLAT_QUERY, null);
+            assertTrue(fastResult.get("data") instanceof JsonSerializable);
+            assertEquals(tree(reference.results(FLAT_QUERY, null)), tree(fastResult));
+            final List<String> keys = new ArrayList<>();
+            tree(fastResult).get("data").fieldNames().forEachRemaining(keys::add);
+            assertEquals(List.of("City_GET", "people", "@context"), keys);
+
+            final Map<String, Object> mergedResult = fast.results(MERGED_QUERY, null);
+            assertTrue(mergedResult.get("data") instanceof Map);
+            assertEquals(tree(reference.results(MERGED_QUERY, null)), tree(mergedResult));
+        } finally {
+            fastConfig.getFetchExecutor().shutdown();
+            config.getFetchExecutor().shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void errors_after_streaming_has_started_should_end_the_stream() throws IOException {
+
+        final var scopes = new ScopeRecordingExecutor();
+        try (var silentEndpoint = new SilentEndpoint(scopes::current)) {
+            final var json = String.format(SILENT_PLACES_CONFIG, silentEndpoint.port());
+            final HGQLConfig config = configService.loadHGQLConfig("test_batching_config.json",
+                    new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), true);
+            config.getFetchExecutor().shutdown();
+            config.setFetchExecutor(scopes);
+            final var service = new HGQLQueryService(config);
+
+            // the people are streamed before their birth places are asked for, which is when the scope expires
+            final var ntriples = new RecordingBody();
+            final var result = service.results(BIRTH_PLACES_QUERY, "N-TRIPLES", LONG_TIMEOUT, ntriples);
+            final var errors = (List<GraphQLError>) result.get("errors");
+            assertFalse(errors.isEmpty());
+            assertTrue(errors.stream().allMatch(error -> error.getErrorType() == ErrorType.ExecutionAborted));
+            final var lines = ntriples.out.toString(StandardCharsets.UTF_8).split("\n");
+            assertTrue(lines.length > errors.size(), "no data was streamed");
+            assertTrue(lines[lines.length - 1].startsWith("# error: Data fetching exceeded the deadline"));
+            assertFalse(ntriples.aborted.get());
+
+            // a binary stream cannot carry comments
+            final var thrift = new RecordingBody();
+            service.results(BIRTH_PLACES_QUERY, "RDF-THRIFT", LONG_TIMEOUT, thrift);
+            assertTrue(thrift.aborted.get());
+        } finally {
+            scopes.shutdown();
+        }
+    }
+
+    private HGQLConfig load(final String configPath) {
+
+        final InputStream inputStream = getClass().getClassLoader().getResourceAsStream(configPath);
+        return configService.loadHGQLConfig(configPath, inputStream, true);
+    }
+
+    // graphql-java's path puts its data in a HashMap, so responses are compared as trees rather than as strings
+    private JsonNode tree(final Map<String, Object> result) throws IOException {
+
+        final var tree = mapper.readTree(mapper.writeValueAsString(result));
+        assertEquals(0, tree.path("errors").size(), tree.path("errors").toString());
+        return tree;
+    }
+
+    private static final class RecordingBody implements HGQLQueryService.Body {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final AtomicBoolean aborted = new AtomicBoolean(false);
+
+        @Override
+        public OutputStream open() {
+            return out;
+        }
+
+        @Override
+        public void abort() {
+            aborted.set(true);
+        }
+    }
+
+    /**
+     * Keeps the scope of the request being answered.
+     */
+    private static final class ScopeRecordingExecutor extends FetchExecutor {
+
+        private final AtomicReference<ExecutionScope> scope = new AtomicReference<>();
+
+        ScopeRecordingExecutor() {
+            super(ExecutionConfig.defaults());
+        }
+
+        @Override
+        public ExecutionScope openScope(final Long timeout) {
+
+            final var opened = super.openScope(timeout);
+            scope.set(opened);
+            return opened;
+        }
+
+        ExecutionScope current() {
+            return scope.get();
+        }
+    }
+
+    /**
+     * A SPARQL endpoint which accepts connections but never answers. Each connection expires the scope of the request
+     * that made it, without waiting for any deadline: by then the request has fetched everything it does not ask of
+     * this endpoint.
+     */
+    private static final class SilentEndpoint implements AutoCloseable {
+
+        private final ServerSocket server;
+        private final List<Socket> connections = new CopyOnWriteArrayList<>();
+
+        SilentEndpoint(final Supplier<ExecutionScope> scope) throws IOException {
+
+            this.server = new ServerSocket(0);
+            final var acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        connections.add(server.accept());
+                    } catch (IOException e) {
+                        return;
+                    }
+                    scope.get().expire();
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            server.close();
+            for (final Socket connection : connections) {
+                connection.close();
+            }
+        }
+    }
 }
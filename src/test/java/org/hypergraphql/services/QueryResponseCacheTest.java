@@ -0,0 +1,69 @@
+package org.hypergraphql.services;
+
+import java.nio.charset.StandardCharsets;
+import org.hypergraphql.config.system.CacheConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryResponseCacheTest {
+
+    private static final long TTL = 60_000;
+    private static final String JSON = "application/json";
+
+    @Test
+    void keys_should_not_depend_on_formatting() {
+
+        assertEquals(
+                QueryResponseCache.keyOf("{ person { name } }", JSON),
+                QueryResponseCache.keyOf("{\n  person {\n    name # formatted differently\n  }\n}", JSON)
+        );
+    }
+
+    @Test
+    void keys_should_depend_on_format() {
+
+        final var key = QueryResponseCache.keyOf("{ person { name } }", JSON);
+        assertNotEquals(key, QueryResponseCache.keyOf("{ person { name } }", "text/turtle TTL"));
+        assertNotEquals(key, QueryResponseCache.keyOf("{ person { label } }", JSON));
+    }
+
+    @Test
+    void etags_should_be_strong_hashes_of_the_bytes() {
+
+        final var etag = QueryResponseCache.etagOf("{\"data\":{}}".getBytes(StandardCharsets.UTF_8));
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertEquals(etag, QueryResponseCache.etagOf("{\"data\":{}}".getBytes(StandardCharsets.UTF_8)));
+        assertNotEquals(etag, QueryResponseCache.etagOf("{\"data\":[]}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void unparseable_queries_should_have_no_key() {
+        assertNull(QueryResponseCache.keyOf("{ person { name }", JSON));
+    }
+
+    @Test
+    void responses_should_be_served_as_written() {
+
+        final var cache = new QueryResponseCache(new CacheConfig(TTL, null));
+        final var key = QueryResponseCache.keyOf("{ person { name } }", JSON);
+        final var body = "{\"data\":{}}".getBytes(StandardCharsets.UTF_8);
+
+        assertNull(cache.get(key));
+        cache.put(key, body, JSON);
+        assertArrayEquals(body, cache.get(key).getBody());
+        assertEquals(JSON, cache.get(key).getContentType());
+
+        assertEquals(QueryResponseCache.etagOf(body), cache.get(key).getEtag());
+        assertTrue(cache.maxAge(cache.get(key)) > 0);
+
+        cache.invalidateAll();
+        assertNull(cache.get(key));
+        assertEquals(4L, cache.getStats().get("hits"));
+        assertEquals(2L, cache.getStats().get("misses"));
+    }
+}